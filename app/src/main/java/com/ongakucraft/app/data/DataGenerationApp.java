@@ -11,8 +11,8 @@ import com.ongakucraft.core.block.color.BlockMapColor;
 import com.ongakucraft.core.block.color.BlockRgbColor;
 import com.ongakucraft.core.block.define.BlockDefine;
 import com.ongakucraft.core.block.define.BlockModelDefine;
-import com.ongakucraft.core.color.ColorConverter;
 import com.ongakucraft.core.color.LabColor;
+import com.ongakucraft.core.color.LabConverter;
 import com.ongakucraft.core.color.RgbColor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -117,17 +117,15 @@ public final class DataGenerationApp {
             final var w = bufferedImage.getWidth();
             final var h = bufferedImage.getHeight();
             final var size = w * h;
+            final var lab = new double[size * 3];
+            LabConverter.toLab(bufferedImage.getRGB(0, 0, w, h, null, 0, w), lab);
             var lSum = 0.0;
             var aSum = 0.0;
             var bSum = 0.0;
-            for (var y = 0; y < h; ++y) {
-                for (var x = 0; x < w; ++x) {
-                    final var pixel = new Color(bufferedImage.getRGB(x, y), true);
-                    final var lab = ColorConverter.RGBtoLAB(pixel.getRed(), pixel.getGreen(), pixel.getBlue());
-                    lSum += lab[0];
-                    aSum += lab[1];
-                    bSum += lab[2];
-                }
+            for (var i = 0; i < size; ++i) {
+                lSum += lab[i * 3];
+                aSum += lab[i * 3 + 1];
+                bSum += lab[i * 3 + 2];
             }
             return LabColor.of(lSum / size, aSum / size, bSum / size);
         } catch (Exception e) {
@@ -3,8 +3,12 @@ package com.ongakucraft.app.data;
 import com.ongakucraft.core.block.BlockDataset;
 import com.ongakucraft.core.block.BlockDatasetVersion;
 import com.ongakucraft.core.block.Direction;
+import com.ongakucraft.core.color.ColorLookupTable;
+import com.ongakucraft.core.structure.Footprint;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.file.Path;
+
 @Slf4j
 public final class DataLoadingApp {
     private static final BlockDatasetVersion VERSION = BlockDatasetVersion.of("1.18.2", 2975);
@@ -16,6 +20,7 @@ public final class DataLoadingApp {
         final var blockRgbColorList = DataGenerationApp.loadBlockRgbColorList(mcVersion);
         final var blockLabColorList = DataGenerationApp.loadBlockLabColorList(mcVersion);
         final var blockMapColorList = DataGenerationApp.loadBlockMapColorList(mcVersion);
+        ColorLookupTable.setCacheDirectory(Path.of(String.format("./data/generated/%s/color_lookup_table", mcVersion)));
         return BlockDataset.of(version, blockPropertyDefineList, blockDefineList,
                                blockRgbColorList, blockLabColorList, blockMapColorList);
     }
@@ -25,6 +30,7 @@ public final class DataLoadingApp {
             final var blockDataset = loadBlockDataset(VERSION);
             final var blockMap = blockDataset.getBlockMap();
             log.info("blockMap : {}", blockMap.size());
+            log.info("footprint : {}", Footprint.of(blockDataset));
             log.info("white_wool : {}", blockDataset.getLabColor(Direction.N, "white_wool"));
         } catch (Exception e) {
             log.error("DataGenerationApp", e);
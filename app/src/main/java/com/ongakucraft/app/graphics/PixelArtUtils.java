@@ -1,6 +1,8 @@
 package com.ongakucraft.app.graphics;
 
 import com.ongakucraft.core.color.LabColor;
+import com.ongakucraft.core.color.LabColorIndex;
+import com.ongakucraft.core.color.LabConverter;
 import com.ongakucraft.core.color.RgbColor;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -10,11 +12,14 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public final class PixelArtUtils {
     private static final Map<Integer, LabColor> rgbaToLabColor = new HashMap<>();
     private static final Map<LabColor, Integer> labColorToRgba = new HashMap<>();
+    // keyed by palette content, palettes share their LabColor instances through rgbaToLabColor
+    private static final Map<List<LabColor>, LabColorIndex> paletteToIndex = new ConcurrentHashMap<>();
 
     private static Map<String, List<LabColor>> loadPalettes(String filePath) throws IOException {
         final var path = Path.of(filePath);
@@ -55,7 +60,7 @@ public final class PixelArtUtils {
             labImage[y] = rabRow;
             for (var x = 0; x < w; ++x) {
                 final var rgbColor = rgbRow[x];
-                final var labColor = LabColor.of(rgbColor);
+                final var labColor = LabConverter.toLabColor(rgbColor.getR(), rgbColor.getG(), rgbColor.getB());
                 rabRow[x] = labColor;
             }
         }
@@ -87,26 +92,23 @@ public final class PixelArtUtils {
         return sampledImage;
     }
 
-    private static LabColor findClosestColor(@NonNull LabColor labColor, @NonNull List<LabColor> palette) {
-        var diff = Double.MAX_VALUE;
-        LabColor closestColor = null;
-        for (final var paletteColor : palette) {
-            final var dist = labColor.distance(paletteColor);
-            if (dist < diff) {
-                diff = dist;
-                closestColor = paletteColor;
-            }
-        }
-        return closestColor;
+    private static LabColorIndex toIndex(@NonNull List<LabColor> palette) {
+        return paletteToIndex.computeIfAbsent(palette, LabColorIndex::of);
+    }
+
+    private static LabColor findClosestColor(@NonNull LabColor labColor, @NonNull List<LabColor> palette, @NonNull LabColorIndex paletteIndex) {
+        final var index = paletteIndex.nearest(labColor);
+        return 0 <= index ? palette.get(index) : null;
     }
 
     private static double diffPalette(@NonNull LabColor[][] labImage, @NonNull List<LabColor> palette) {
         var diff = 0.0;
         final var w = labImage[0].length;
+        final var paletteIndex = toIndex(palette);
         for (final var labRow : labImage) {
             for (var x = 0; x < w; ++x) {
                 final var labColor = labRow[x];
-                final var closestColor = findClosestColor(labColor, palette);
+                final var closestColor = findClosestColor(labColor, palette, paletteIndex);
                 final var dist = labColor.distance(closestColor);
                 diff += dist;
             }
@@ -118,11 +120,12 @@ public final class PixelArtUtils {
         final var h = labImage.length;
         final var w = labImage[0].length;
         final var bufferedImage = GraphicUtils.newImage(w, h);
+        final var paletteIndex = toIndex(palette);
         for (var y = 0; y < h; ++y) {
             final var labRow = labImage[y];
             for (var x = 0; x < w; ++x) {
                 final var labColor = labRow[x];
-                final var closestColor = findClosestColor(labColor, palette);
+                final var closestColor = findClosestColor(labColor, palette, paletteIndex);
                 final var rgba = labColorToRgba.get(closestColor);
                 bufferedImage.setRGB(x, y, rgba);
             }
@@ -4,7 +4,9 @@ import com.ongakucraft.app.data.DataLoadingApp;
 import com.ongakucraft.app.graphics.GraphicUtils;
 import com.ongakucraft.core.block.BlockDatasetVersion;
 import com.ongakucraft.core.block.Direction;
+import com.ongakucraft.core.color.RgbColor;
 import com.ongakucraft.core.prefab.MapArtBuilder;
+import com.ongakucraft.core.prefab.TiledMapArtBuilder;
 import com.ongakucraft.core.structure.Position;
 import com.ongakucraft.core.structure.Range;
 import com.ongakucraft.core.structure.Structure;
@@ -54,21 +56,15 @@ public final class MoireAnimationUtils {
                 (rows * MapArtBuilder.BLOCK_LENGTH_PER_MAP - h) / 2);
 //        GraphicUtils.writeImage(slitMap, String.format("%s/slitMap.png", inputDirPath));
 
-        final var bufferedImage = slitMap;
+        final var image = GraphicUtils.toRgbImage(slitMap);
+        final var background = RgbColor.of(Color.LIGHT_GRAY.getRed(), Color.LIGHT_GRAY.getGreen(), Color.LIGHT_GRAY.getBlue());
         final var blockMapColorList = blockDataset.getBlockMapColorList();
         final var nbtWriter = NbtWriter.of(version);
-        for (var row = 0; row < rows; ++row) {
-            for (var col = 0; col < cols; ++col) {
-                final var rangeY = Range.of(row * MapArtBuilder.BLOCK_LENGTH_PER_MAP, (row + 1) * MapArtBuilder.BLOCK_LENGTH_PER_MAP);
-                final var rangeX = Range.of(col * MapArtBuilder.BLOCK_LENGTH_PER_MAP, (col + 1) * MapArtBuilder.BLOCK_LENGTH_PER_MAP);
-                final var subBufferedImage = GraphicUtils.copy(bufferedImage, rangeX, rangeY);
-                final var image = GraphicUtils.toRgbImage(subBufferedImage);
-                final var structure = MapArtBuilder.buildMap(image, blockMapColorList, blockDataset);
-                nbtWriter.write(structure, String.format("%s/map-%d-%d.nbt", outputDirPath, row, col));
-                structure.replace(structure.getRange3(), blockDataset.getBlock("air"));
-                nbtWriter.write(structure, String.format("%s/map-%d-%d-.nbt", outputDirPath, row, col));
-            }
-        }
+        TiledMapArtBuilder.build(image, background, blockMapColorList, blockDataset, (row, col, structure) -> {
+            nbtWriter.write(structure, String.format("%s/map-%d-%d.nbt", outputDirPath, row, col));
+            structure.replace(structure.getRange3(), blockDataset.getBlock("air"));
+            nbtWriter.write(structure, String.format("%s/map-%d-%d-.nbt", outputDirPath, row, col));
+        });
     }
 
     private static void shubaDuckMapAnimation(BlockDatasetVersion version, String inputDirPath, String outputDirPath) throws Exception {
@@ -34,9 +34,7 @@ public final class NbtWriter {
     @NonNull private final BlockDatasetVersion version;
 
     public void write(Structure structure, String outputFilePath) throws Exception {
-        structure = structure.clone();
-        structure.regulate();
-        final var compoundTag = tag(structure, version.getDataVersion());
+        final var compoundTag = tag(structure, version.getDataVersion(), true);
         new Nbt().toFile(compoundTag, new File(outputFilePath), CompressionType.GZIP);
     }
 
@@ -46,31 +44,54 @@ public final class NbtWriter {
     }
 
     public String dump(Structure structure) {
-        final var compoundTag = tag(structure, version.getDataVersion());
+        final var compoundTag = tag(structure, version.getDataVersion(), false);
         return new Nbt().toSnbt(compoundTag);
     }
 
-    private static CompoundTag tag(Structure structure, int dataVersion) {
+    // regulated positions are shifted so the minimum corner lands on 0, like Structure.regulate without copying
+    private static CompoundTag tag(Structure structure, int dataVersion, boolean regulated) {
         final var range3 = structure.getRange3();
+        final var xMin = regulated ? range3.getX().getMin() : 0;
+        final var yMin = regulated ? range3.getY().getMin() : 0;
+        final var zMin = regulated ? range3.getZ().getMin() : 0;
         final var xLength = range3.getX().length();
         final var yLength = range3.getY().length();
         final var zLength = range3.getZ().length();
         final var blocks = new ArrayList<Tag>();
         final var palettes = new ArrayList<Tag>();
+        final var paletteBlockList = new ArrayList<Block>();
         final var blockToState = new HashMap<Block, Integer>();
-        for (var pos : structure.getPositionList().stream().sorted(NbtWriter::comparePosition).toList()) {
-            final var block = structure.get(pos);
-            final var state = blockToState.computeIfAbsent(block, k -> blockToState.size());
+        final var stateIdToState = new int[][] { new int[64] };
+        structure.forEachOrdered((x, y, z, block) -> {
+            final var stateId = block.getStateId();
+            var state = -1;
+            // 0 marks an unassigned slot, palette indices are stored off by one
+            if (Block.UNREGISTERED_STATE_ID != stateId && stateId < stateIdToState[0].length && 0 != stateIdToState[0][stateId]) {
+                final var cachedState = stateIdToState[0][stateId] - 1;
+                // state ids are per registry, a block of another dataset with the same id takes the equality map
+                if (paletteBlockList.get(cachedState).isSameState(block)) {
+                    state = cachedState;
+                }
+            }
+            if (state < 0) {
+                state = blockToState.computeIfAbsent(block, k -> paletteBlockList.size());
+                if (Block.UNREGISTERED_STATE_ID != stateId) {
+                    if (stateIdToState[0].length <= stateId) {
+                        stateIdToState[0] = Arrays.copyOf(stateIdToState[0], Math.max(stateIdToState[0].length * 2, stateId + 1));
+                    }
+                    if (0 == stateIdToState[0][stateId]) {
+                        stateIdToState[0][stateId] = state + 1;
+                    }
+                }
+            }
+            if (paletteBlockList.size() == state) {
+                paletteBlockList.add(block);
+            }
             final var entityData = block.getEntityData();
-            blocks.add(block(pos, state, entityData));
-        }
-        for (var i = 0; i < blockToState.size(); ++i) {
-            palettes.add(null);
-        }
-        for (var entry : blockToState.entrySet()) {
-            final var block = entry.getKey();
-            final var palette = palette(block.getProperties(), block.getId().getId());
-            palettes.set(entry.getValue(), palette);
+            blocks.add(block(x - xMin, y - yMin, z - zMin, state, entityData));
+        });
+        for (var block : paletteBlockList) {
+            palettes.add(palette(block.getProperties(), block.getId().getId()));
         }
         final var tag = new CompoundTag("null");
         tag.put(tag("size", xLength, yLength, zLength));
@@ -113,16 +134,9 @@ public final class NbtWriter {
         return tag;
     }
 
-    public static int comparePosition(Position a, Position b) {
-        return Comparator.comparingInt(Position::getY)
-                         .thenComparingInt(Position::getZ)
-                         .thenComparingInt(Position::getX)
-                         .compare(a, b);
-    }
-
-    private static CompoundTag block(Position pos, int state, Map<String, Object> entityData) {
+    private static CompoundTag block(int x, int y, int z, int state, Map<String, Object> entityData) {
         final var block = new CompoundTag((String) null);
-        block.put(pos(pos));
+        block.put(tag("pos", x, y, z));
         block.put(tag("state", state));
         if (!entityData.isEmpty()) {
             block.put(nbt(entityData));
@@ -130,10 +144,6 @@ public final class NbtWriter {
         return block;
     }
 
-    private static ListTag<IntTag> pos(Position pos) {
-        return tag("pos", pos.getX(), pos.getY(), pos.getZ());
-    }
-
     private static CompoundTag nbt(Map<String, Object> entityData) {
         final var nbt = new CompoundTag("nbt");
         for (var entry : entityData.entrySet()) {
@@ -146,20 +146,17 @@ public final class PrefabUtils {
                 final var blockGrid = PixelArtBuilder.frontWallBlockGrid(image, colorBlockList, blockDataset);
                 blockGridList.add(blockGrid);
             }
+            final List<Structure> structureList = new ArrayList<>();
             for (var i = 0; i < blockGridList.size(); ++i) {
                 final var blockGrid = blockGridList.get(i);
                 final var structure = PixelArtBuilder.frontWall(blockGrid);
+                structureList.add(structure);
                 nbtWriter.write(structure, String.format("%s/image-%02d.nbt", outputDirPath, i));
             }
-            final var diffBlockGridList = AnimationBuilder.diffBlockGridList(blockGridList);
-            final List<Structure> diffStructureList = new ArrayList<>();
-            for (final var diffBlockGrid : diffBlockGridList) {
-                final var diffStructure = PixelArtBuilder.frontWall(diffBlockGrid);
-                diffStructureList.add(diffStructure);
-                log.info("range : {}, size : {}", diffStructure.getRange3(), diffStructure.size());
-            }
-            for (var i = 0; i < diffStructureList.size(); ++i) {
-                final var diffStructure = diffStructureList.get(i);
+            final var diffList = AnimationBuilder.diffStructureList(structureList);
+            for (var i = 0; i < diffList.size(); ++i) {
+                final var diffStructure = diffList.get(i).toStructure();
+                log.info("range : {}, size : {}, sections : {}", diffStructure.getRange3(), diffList.get(i).size(), diffList.get(i).sectionCount());
                 nbtWriter.write(diffStructure, String.format("%s/diff-%02d.nbt", outputDirPath, i));
             }
         } catch (Exception e) {
@@ -205,20 +202,17 @@ public final class PrefabUtils {
         final var bufferedImage = GraphicUtils.readImage(inputFilePath);
         final var blockMapColorList = blockDataset.getBlockMapColorList();
         final var nbtWriter = NbtWriter.of(version);
+        // only whole maps, the remainder at the right and bottom edge is dropped
         final var rows = bufferedImage.getHeight() / MapArtBuilder.BLOCK_LENGTH_PER_MAP;
         final var cols = bufferedImage.getWidth() / MapArtBuilder.BLOCK_LENGTH_PER_MAP;
-        for (var row = 0; row < rows; ++row) {
-            for (var col = 0; col < cols; ++col) {
-                final var rangeY = Range.of(row * MapArtBuilder.BLOCK_LENGTH_PER_MAP, (row + 1) * MapArtBuilder.BLOCK_LENGTH_PER_MAP);
-                final var rangeX = Range.of(col * MapArtBuilder.BLOCK_LENGTH_PER_MAP, (col + 1) * MapArtBuilder.BLOCK_LENGTH_PER_MAP);
-                final var subBufferedImage = GraphicUtils.copy(bufferedImage, rangeX, rangeY);
-                final var image = GraphicUtils.toRgbImage(subBufferedImage);
-                final var structure = MapArtBuilder.buildMap(image, blockMapColorList, blockDataset);
-                nbtWriter.write(structure, String.format("%s/map-%d-%d.nbt", outputDirPath, row, col));
-                structure.replace(structure.getRange3(), blockDataset.getBlock("air"));
-                nbtWriter.write(structure, String.format("%s/map-%d-%d-.nbt", outputDirPath, row, col));
-            }
-        }
+        final var croppedBufferedImage = GraphicUtils.copy(bufferedImage, Range.of(0, cols * MapArtBuilder.BLOCK_LENGTH_PER_MAP),
+                                                           Range.of(0, rows * MapArtBuilder.BLOCK_LENGTH_PER_MAP));
+        final var image = GraphicUtils.toRgbImage(croppedBufferedImage);
+        TiledMapArtBuilder.build(image, RgbColor.of(255, 255, 255), blockMapColorList, blockDataset, (row, col, structure) -> {
+            nbtWriter.write(structure, String.format("%s/map-%d-%d.nbt", outputDirPath, row, col));
+            structure.replace(structure.getRange3(), blockDataset.getBlock("air"));
+            nbtWriter.write(structure, String.format("%s/map-%d-%d-.nbt", outputDirPath, row, col));
+        });
     }
 
     private static Structure demoNoDelay(BlockDatasetVersion version) throws Exception {
@@ -500,18 +494,16 @@ public final class PrefabUtils {
     private static int placeRedstoneWireLine(Cursor cursor, String floor, int length) {
         var repeaterCount = 0;
         final var redstoneLimitLength = 15;
-        final var sides = List.of(cursor.getFacing(), cursor.getFacing().back());
+        final var wire = cursor.getRedstoneWire(List.of(cursor.getFacing(), cursor.getFacing().back()));
         while (redstoneLimitLength < length) {
-            for (var i = 0; i < redstoneLimitLength; ++i) {
-                cursor.place(floor).jump(1).placeRedstoneWire(sides).jump(-1).step();
-            }
+            cursor.clone().jump(1).placeRun(wire, redstoneLimitLength);
+            cursor.placeRun(floor, redstoneLimitLength);
             cursor.place(floor).jump(1).placeRepeater(1).jump(-1).step();
             length -= (redstoneLimitLength + 1);
             ++repeaterCount;
         }
-        for (var i = 0; i < length; ++i) {
-            cursor.place(floor).jump(1).placeRedstoneWire(sides).jump(-1).step();
-        }
+        cursor.clone().jump(1).placeRun(wire, length);
+        cursor.placeRun(floor, length);
         return repeaterCount;
     }
 
@@ -0,0 +1,45 @@
+package com.ongakucraft.app.data
+
+import com.ongakucraft.core.color.LabColor
+import com.ongakucraft.core.color.LabConverter
+import com.ongakucraft.core.color.RgbColor
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import javax.imageio.ImageIO
+import java.awt.image.BufferedImage
+import java.nio.file.Path
+
+class DataGenerationAppTest extends Specification {
+    @TempDir
+    Path directory
+
+    def "should average texture lab colors as exactly as the per color conversion"() {
+        setup:
+        def random = new Random(22)
+        def image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB)
+        def expected = [0.0d, 0.0d, 0.0d] as double[]
+        for (def y = 0; y < 16; ++y) {
+            for (def x = 0; x < 16; ++x) {
+                def r = random.nextInt(256)
+                def g = random.nextInt(256)
+                def b = random.nextInt(256)
+                image.setRGB(x, y, (0xFF << 24) | (r << 16) | (g << 8) | b)
+                def labColor = LabColor.of(RgbColor.of(r, g, b))
+                expected[0] += labColor.l
+                expected[1] += labColor.a
+                expected[2] += labColor.b
+            }
+        }
+        def texture = directory.resolve("texture.png").toFile()
+        ImageIO.write(image, "png", texture)
+
+        when:
+        def labColor = DataGenerationApp.generateLabColor(texture.path)
+
+        then:
+        Math.abs(expected[0] / 256 - labColor.l) <= LabConverter.MAX_ERROR
+        Math.abs(expected[1] / 256 - labColor.a) <= LabConverter.MAX_ERROR
+        Math.abs(expected[2] / 256 - labColor.b) <= LabConverter.MAX_ERROR
+    }
+}
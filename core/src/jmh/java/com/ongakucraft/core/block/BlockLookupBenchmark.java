@@ -0,0 +1,75 @@
+package com.ongakucraft.core.block;
+
+import com.ongakucraft.core.block.define.BlockDefine;
+import com.ongakucraft.core.block.define.BlockPropertyDefine;
+import com.ongakucraft.core.structure.Cursor;
+import com.ongakucraft.core.structure.Position;
+import com.ongakucraft.core.structure.Structure;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockLookupBenchmark {
+    private static final int NOTE_COUNT = 1024;
+
+    private BlockDataset blockDataset;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final var note = BlockPropertyDefine.of("NOTE", "note", IntStream.range(0, 25).mapToObj(String::valueOf).toList());
+        final var delay = BlockPropertyDefine.of("DELAY", "delay", List.of("1", "2", "3", "4"));
+        final var facing = BlockPropertyDefine.of("HORIZONTAL_FACING", "facing", List.of("north", "east", "south", "west"));
+        final var blockDefineList = List.of(define("grass_block"),
+                                            define("stone"),
+                                            define("note_block", note),
+                                            define("repeater", delay, facing),
+                                            define("redstone_wire"));
+        blockDataset = BlockDataset.of(BlockDatasetVersion.of("1.18.2", 2975), List.of(note, delay, facing),
+                                       blockDefineList, List.of(), List.of(), List.of());
+    }
+
+    @Benchmark
+    public void getBlock(Blackhole blackhole) {
+        for (var i = 0; i < NOTE_COUNT; ++i) {
+            blackhole.consume(blockDataset.getBlock("note_block"));
+            blackhole.consume(blockDataset.getBlock("repeater"));
+        }
+    }
+
+    @Benchmark
+    public void position(Blackhole blackhole) {
+        for (var i = 0; i < NOTE_COUNT; ++i) {
+            blackhole.consume(Position.of(i & 7, 1, i & 15));
+        }
+    }
+
+    @Benchmark
+    public Structure circuit() {
+        final var structure = new Structure();
+        final var cursor = new Cursor(blockDataset, structure);
+        for (var i = 0; i < NOTE_COUNT; ++i) {
+            cursor.jump(-1).place("grass_block").jump(1);
+            if (0 == i % 4) {
+                cursor.placeNoteBlock(i % 25);
+            } else {
+                cursor.placeRepeater(1 + i % 4);
+            }
+            structure.get(Position.of(0, 1, i & 15));
+            cursor.step();
+        }
+        return structure;
+    }
+
+    private static BlockDefine define(String path, BlockPropertyDefine... properties) {
+        return BlockDefine.of(BlockId.of(path), List.of(properties), false, 0, false, false, true);
+    }
+}
@@ -0,0 +1,64 @@
+package com.ongakucraft.core.color;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class LabPaletteBenchmark {
+    private static final int TARGET_COUNT = 64;
+
+    @Param({ "64", "400" })
+    private int paletteSize;
+
+    private List<LabColor> colorList;
+    private LabPalette palette;
+    private LabColor[] targets;
+    private float[] distances;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final var random = new Random(1);
+        colorList = IntStream.range(0, paletteSize).mapToObj(i -> randomColor(random)).toList();
+        palette = LabPalette.of(colorList);
+        targets = IntStream.range(0, TARGET_COUNT).mapToObj(i -> randomColor(random)).toArray(LabColor[]::new);
+        distances = new float[paletteSize];
+    }
+
+    @Benchmark
+    public void perObject(Blackhole blackhole) {
+        for (final var target : targets) {
+            for (final var color : colorList) {
+                blackhole.consume(target.distance(color));
+            }
+        }
+    }
+
+    @Benchmark
+    public void batch(Blackhole blackhole) {
+        for (final var target : targets) {
+            palette.distances(target, distances);
+            blackhole.consume(distances);
+        }
+    }
+
+    @Benchmark
+    public void nearest(Blackhole blackhole) {
+        for (final var target : targets) {
+            blackhole.consume(palette.nearest(target, distances));
+        }
+    }
+
+    private static LabColor randomColor(Random random) {
+        return LabColor.of(RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+import com.ongakucraft.core.block.BlockId;
+import com.ongakucraft.core.block.define.BlockDefine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StructureBenchmark {
+    private static final Range3 FILL_RANGE = Range3.of(Range.of(256), Range.of(64), Range.of(256));
+    private static final Range3 REPLACE_RANGE = Range3.of(Range.of(32, 224), Range.of(8, 56), Range.of(32, 224));
+
+    @Param({ "hash", "section-sequential", "section" })
+    public String storage;
+
+    private List<Block> blockList;
+    private Structure prefab;
+    private Structure scene;
+
+    @Setup(Level.Trial)
+    public void setupPrefab() {
+        blockList = List.of(block("stone"), block("dirt"), block("glass"), block("oak_planks"));
+        prefab = new Structure(newStorage());
+        for (var x = 0; x < 128; ++x) {
+            for (var y = 0; y < 32; ++y) {
+                for (var z = 0; z < 128; ++z) {
+                    prefab.put(x, y, z, blockList.get((x ^ y ^ z) & 3));
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupScene() {
+        scene = new Structure(newStorage());
+        scene.fill(FILL_RANGE, blockList.get(0));
+    }
+
+    @Benchmark
+    public Structure fill() {
+        final var structure = new Structure(newStorage());
+        structure.fill(FILL_RANGE, blockList.get(1));
+        return structure;
+    }
+
+    @Benchmark
+    public Structure paste() {
+        scene.paste(prefab, 1, 200, 10, 40);
+        return scene;
+    }
+
+    @Benchmark
+    public Structure replace() {
+        scene.replace(REPLACE_RANGE, blockList.get(2));
+        return scene;
+    }
+
+    @Benchmark
+    public Map<String, Integer> stat() {
+        return scene.stat();
+    }
+
+    private BlockStorage newStorage() {
+        return switch (storage) {
+            case "hash" -> new HashBlockStorage();
+            case "section-sequential" -> new SectionBlockStorage(Integer.MAX_VALUE);
+            default -> new SectionBlockStorage();
+        };
+    }
+
+    private static Block block(String path) {
+        return Block.of(BlockDefine.of(BlockId.of(path), List.of(), false, 0, false, false, true));
+    }
+}
@@ -0,0 +1,74 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+import com.ongakucraft.core.block.BlockId;
+import com.ongakucraft.core.block.define.BlockDefine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// y-z-x walks as NbtWriter needs them, sorting the position list against reading sections in order
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StructureOrderBenchmark {
+    private static final int LENGTH = 256;
+    private static final int HEIGHT = 64;
+
+    // sparse is about 16 blocks per section like a redstone circuit, dense is a filled build
+    @Param({ "sparse", "dense" })
+    public String layout;
+
+    @Param({ "0", "1" })
+    public int rotation;
+
+    private Structure structure;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final var blockList = List.of(block("stone"), block("redstone_wire"), block("repeater"), block("glass"));
+        final var random = new Random(1);
+        structure = new Structure();
+        if ("dense".equals(layout)) {
+            for (var x = 0; x < LENGTH; ++x) {
+                for (var y = 0; y < HEIGHT; ++y) {
+                    for (var z = 0; z < LENGTH; ++z) {
+                        structure.put(x, y, z, blockList.get((x ^ y ^ z) & 3));
+                    }
+                }
+            }
+        } else {
+            final var count = LENGTH * HEIGHT * LENGTH / Section.VOLUME * 16;
+            for (var i = 0; i < count; ++i) {
+                structure.put(random.nextInt(LENGTH), random.nextInt(HEIGHT), random.nextInt(LENGTH), blockList.get(i & 3));
+            }
+        }
+        structure.rotate(rotation);
+        structure.translate(5, 0, 9);
+    }
+
+    @Benchmark
+    public void sorted(Blackhole blackhole) {
+        final var positionList = structure.getPositionList();
+        positionList.sort(Comparator.comparingInt(Position::getY).thenComparingInt(Position::getZ).thenComparingInt(Position::getX));
+        for (final var position : positionList) {
+            blackhole.consume(structure.get(position));
+        }
+    }
+
+    @Benchmark
+    public void ordered(Blackhole blackhole) {
+        structure.forEachOrdered((x, y, z, block) -> blackhole.consume(block));
+    }
+
+    private static Block block(String path) {
+        return Block.of(BlockDefine.of(BlockId.of(path), List.of(), false, 0, false, false, true));
+    }
+}
@@ -14,23 +14,60 @@ import java.util.stream.Collectors;
 import static lombok.EqualsAndHashCode.CacheStrategy.LAZY;
 
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
-@EqualsAndHashCode(cacheStrategy = LAZY, exclude = "propertyDefineMap")
+@EqualsAndHashCode(cacheStrategy = LAZY, exclude = { "propertyDefineMap", "stateId", "transitions" })
 @Getter
-@ToString
+@ToString(exclude = "transitions")
 public final class Block {
+    public static final int UNREGISTERED_STATE_ID = -1;
     private static final Direction DEFAULT_FACING = Direction.N;
 
     public static Block of(BlockDefine blockDefine) {
         return new Block(blockDefine.getId(), blockDefine.getProperties().stream().collect(
                 Collectors.toMap(BlockPropertyDefine::getKey, Function.identity())),
-                         DEFAULT_FACING, new HashMap<>(), new HashMap<>());
+                         DEFAULT_FACING, new HashMap<>(), Collections.emptyMap(), UNREGISTERED_STATE_ID, null);
     }
 
     @NonNull private final BlockId id;
     @NonNull private final Map<String, BlockPropertyDefine> propertyDefineMap;
-    @NonNull @With private final Direction facing;
-    @NonNull @With(AccessLevel.PRIVATE) private final Map<String, String> propertyValueMap;
-    @NonNull @With(AccessLevel.PRIVATE) private final Map<String, Object> entityData;
+    @NonNull private final Direction facing;
+    @NonNull private final Map<String, String> propertyValueMap;
+    // never modified in place, states copied from each other share the same map
+    @NonNull private final Map<String, Object> entityData;
+    private final int stateId;
+    @Getter(AccessLevel.NONE) private final BlockStateTransitions transitions;
+
+    public boolean isRegistered() {
+        return null != transitions;
+    }
+
+    // null for blocks that were never registered
+    public BlockStateRegistry getRegistry() {
+        return isRegistered() ? transitions.getRegistry() : null;
+    }
+
+    // states of one registry are interned, so only blocks outside it need a full comparison
+    public boolean isSameState(Block other) {
+        if (this == other) {
+            return true;
+        }
+        if (null == other) {
+            return false;
+        }
+        if (isRegistered() && other.isRegistered() && transitions.isSameRegistry(other.transitions)) {
+            return false;
+        }
+        return equals(other);
+    }
+
+    public Block withFacing(@NonNull Direction facing) {
+        if (this.facing == facing) {
+            return this;
+        }
+        if (isRegistered()) {
+            return transitions.withFacing(this, facing);
+        }
+        return new Block(id, propertyDefineMap, facing, propertyValueMap, entityData, UNREGISTERED_STATE_ID, null);
+    }
 
     public Block rotate(int times) {
         if (0 == times % 4) {
@@ -67,12 +104,16 @@ public final class Block {
         if (propertyDefineMap.containsKey(property) && !propertyDefineMap.get(property).contains(value)) {
             throw new OcException("invalid property value : %s %s", property, value);
         }
-        final var newPropertyValueMap = new HashMap<>(propertyValueMap);
-        newPropertyValueMap.put(property, value);
-        return withPropertyValueMap(newPropertyValueMap);
+        if (isRegistered()) {
+            return transitions.withProperty(this, property, value);
+        }
+        return copyWithProperty(property, value);
     }
 
     public String removeProperty(@NonNull String property) {
+        if (isRegistered()) {
+            throw new OcException("registered block state is immutable : %s %s", id, property);
+        }
         return propertyValueMap.remove(property);
     }
 
@@ -99,10 +140,26 @@ public final class Block {
     public Block putData(String key, String value) {
         final var newEntityData = new HashMap<>(entityData);
         newEntityData.put(key, value);
-        return withEntityData(newEntityData);
+        return new Block(id, propertyDefineMap, facing, new HashMap<>(propertyValueMap), Collections.unmodifiableMap(newEntityData),
+                         UNREGISTERED_STATE_ID, null);
     }
 
     public Map<String, Object> getEntityData() {
-        return Collections.unmodifiableMap(entityData);
+        return entityData;
+    }
+
+    Block copyWithFacing(Direction facing) {
+        return new Block(id, propertyDefineMap, facing, propertyValueMap, entityData, UNREGISTERED_STATE_ID, null);
+    }
+
+    Block copyWithProperty(String property, String value) {
+        final var newPropertyValueMap = new HashMap<>(propertyValueMap);
+        newPropertyValueMap.put(property, value);
+        return new Block(id, propertyDefineMap, facing, newPropertyValueMap, entityData, UNREGISTERED_STATE_ID, null);
+    }
+
+    Block register(int stateId, BlockStateTransitions transitions) {
+        return new Block(id, propertyDefineMap, facing, Collections.unmodifiableMap(new HashMap<>(propertyValueMap)),
+                         entityData, stateId, transitions);
     }
 }
@@ -27,7 +27,8 @@ public final class BlockDataset {
                                   List<BlockRgbColor> blockRgbColorList,
                                   List<BlockLabColor> blockLabColorList,
                                   List<BlockMapColor> blockMapColorList) {
-        final var blockList = blockDefineList.stream().map(Block::of).toList();
+        final var blockStateRegistry = new BlockStateRegistry();
+        final var blockList = blockDefineList.stream().map(Block::of).map(blockStateRegistry::register).toList();
         final var blockMapBaseColorList = blockMapColorList.stream().filter(blockMapColor -> 0 == blockMapColor.getGradient()).toList();
         final var blockPropertyDefineMap = blockPropertyDefineList.stream().collect(Collectors.toMap(BlockPropertyDefine::getId, Function.identity()));
         final var blockDefineMap = blockDefineList.stream().collect(Collectors.toMap(BlockDefine::getId, Function.identity()));
@@ -46,7 +47,8 @@ public final class BlockDataset {
                                 Collections.unmodifiableMap(blockDefineMap),
                                 Collections.unmodifiableMap(blockMap),
                                 Collections.unmodifiableMap(rgbColorMap),
-                                Collections.unmodifiableMap(labColorMap));
+                                Collections.unmodifiableMap(labColorMap),
+                                blockStateRegistry);
     }
 
     @NonNull private final BlockDatasetVersion version;
@@ -62,6 +64,7 @@ public final class BlockDataset {
     @NonNull private final Map<BlockId, Block> blockMap;
     @NonNull private final Map<BlockId, BlockRgbColor> rgbColorMap;
     @NonNull private final Map<BlockId, BlockLabColor> labColorMap;
+    @NonNull private final BlockStateRegistry blockStateRegistry;
 
     public Block getBlock(String path) {
         return getBlock(BlockId.of(path));
@@ -2,7 +2,9 @@ package com.ongakucraft.core.block;
 
 import lombok.*;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static lombok.EqualsAndHashCode.CacheStrategy.LAZY;
 
@@ -13,13 +15,16 @@ import static lombok.EqualsAndHashCode.CacheStrategy.LAZY;
 public final class BlockId {
     public static final String DEFAULT_NAMESPACE = "minecraft";
     private static final char DELIMITER = ':';
+    // ids are interned per namespace so that lookups by path never build a new id string
+    private static final Map<String, Map<String, BlockId>> NAMESPACE_POOL = new ConcurrentHashMap<>();
+    private static final Map<String, BlockId> DEFAULT_POOL = pool(DEFAULT_NAMESPACE);
 
-    public static BlockId of(String namespace, String path) {
-        return new BlockId(namespace, path);
+    public static BlockId of(@NonNull String namespace, @NonNull String path) {
+        return intern(pool(namespace), namespace, path);
     }
 
-    public static BlockId of(String path) {
-        return of(DEFAULT_NAMESPACE, path);
+    public static BlockId of(@NonNull String path) {
+        return intern(DEFAULT_POOL, DEFAULT_NAMESPACE, path);
     }
 
     public static Optional<BlockId> parse(String id) {
@@ -38,6 +43,16 @@ public final class BlockId {
         this(namespace, path, namespace + DELIMITER + path);
     }
 
+    private static Map<String, BlockId> pool(String namespace) {
+        final var pool = NAMESPACE_POOL.get(namespace);
+        return null != pool ? pool : NAMESPACE_POOL.computeIfAbsent(namespace, k -> new ConcurrentHashMap<>());
+    }
+
+    private static BlockId intern(Map<String, BlockId> pool, String namespace, String path) {
+        final var blockId = pool.get(path);
+        return null != blockId ? blockId : pool.computeIfAbsent(path, k -> new BlockId(namespace, k));
+    }
+
     @Override
     public String toString() {
         return id;
@@ -0,0 +1,86 @@
+package com.ongakucraft.core.block;
+
+import com.ongakucraft.core.OcException;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class BlockStateRegistry {
+    private final Map<Block, Block> stateMap = new HashMap<>();
+    private final Map<BlockId, PropertyLayout> layoutMap = new HashMap<>();
+    private final List<Block> stateList = new ArrayList<>();
+
+    public synchronized Block register(@NonNull Block block) {
+        final var state = stateMap.get(block);
+        if (null != state) {
+            return state;
+        }
+        final var layout = layoutMap.computeIfAbsent(block.getId(), id -> PropertyLayout.of(block));
+        final var newState = block.register(stateList.size(), new BlockStateTransitions(this, layout));
+        stateMap.put(newState, newState);
+        stateList.add(newState);
+        return newState;
+    }
+
+    // the equal state of this registry without registering it, null when there is none
+    public synchronized Block findState(@NonNull Block block) {
+        return stateMap.get(block);
+    }
+
+    public synchronized Block getState(int stateId) {
+        if (stateId < 0 || stateList.size() <= stateId) {
+            throw new OcException("[BlockStateRegistry][getState] invalid state id : %d", stateId);
+        }
+        return stateList.get(stateId);
+    }
+
+    public synchronized int size() {
+        return stateList.size();
+    }
+
+    static final class PropertyLayout {
+        private static PropertyLayout of(Block block) {
+            final var keys = block.getPropertyDefineMap().keySet().toArray(String[]::new);
+            Arrays.sort(keys);
+            final List<Map<String, Integer>> valueIndexMaps = new ArrayList<>(keys.length);
+            for (final var key : keys) {
+                final var values = block.getPropertyDefineMap().get(key).getValues();
+                final Map<String, Integer> valueIndexMap = new HashMap<>();
+                for (var j = 0; j < values.size(); ++j) {
+                    valueIndexMap.put(values.get(j), j);
+                }
+                valueIndexMaps.add(valueIndexMap);
+            }
+            return new PropertyLayout(keys, valueIndexMaps);
+        }
+
+        private final String[] keys;
+        private final List<Map<String, Integer>> valueIndexMaps;
+
+        private PropertyLayout(String[] keys, List<Map<String, Integer>> valueIndexMaps) {
+            this.keys = keys;
+            this.valueIndexMaps = valueIndexMaps;
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        int valueCount(int propertyIndex) {
+            return valueIndexMaps.get(propertyIndex).size();
+        }
+
+        int propertyIndex(String property) {
+            final var index = Arrays.binarySearch(keys, property);
+            return index < 0 ? -1 : index;
+        }
+
+        int valueIndex(int propertyIndex, String value) {
+            return valueIndexMaps.get(propertyIndex).get(value);
+        }
+    }
+}
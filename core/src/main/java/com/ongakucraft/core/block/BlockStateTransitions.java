@@ -0,0 +1,47 @@
+package com.ongakucraft.core.block;
+
+// per-state lookup tables, filled lazily as transitions are first requested
+final class BlockStateTransitions {
+    private final BlockStateRegistry registry;
+    private final BlockStateRegistry.PropertyLayout layout;
+    private final Block[] facings = new Block[Direction.values().length];
+    private final Block[][] properties;
+
+    BlockStateTransitions(BlockStateRegistry registry, BlockStateRegistry.PropertyLayout layout) {
+        this.registry = registry;
+        this.layout = layout;
+        properties = new Block[layout.size()][];
+        for (var i = 0; i < properties.length; ++i) {
+            properties[i] = new Block[layout.valueCount(i)];
+        }
+    }
+
+    BlockStateRegistry getRegistry() {
+        return registry;
+    }
+
+    boolean isSameRegistry(BlockStateTransitions other) {
+        return registry == other.registry;
+    }
+
+    Block withFacing(Block block, Direction facing) {
+        final var next = facings[facing.ordinal()];
+        if (null != next) {
+            return next;
+        }
+        return facings[facing.ordinal()] = registry.register(block.copyWithFacing(facing));
+    }
+
+    Block withProperty(Block block, String property, String value) {
+        final var propertyIndex = layout.propertyIndex(property);
+        if (propertyIndex < 0) {
+            return registry.register(block.copyWithProperty(property, value));
+        }
+        final var valueIndex = layout.valueIndex(propertyIndex, value);
+        final var next = properties[propertyIndex][valueIndex];
+        if (null != next) {
+            return next;
+        }
+        return properties[propertyIndex][valueIndex] = registry.register(block.copyWithProperty(property, value));
+    }
+}
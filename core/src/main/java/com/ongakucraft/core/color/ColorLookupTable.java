@@ -0,0 +1,136 @@
+package com.ongakucraft.core.color;
+
+import com.ongakucraft.core.OcException;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// nearest palette entry by CIEDE2000 for every 24-bit rgb color, filled lazily as colors are first looked up.
+// entries hold palette index + 1 so that 0 marks a color that was not matched yet, concurrent fills of the same
+// entry always write the same value. with a cache directory the table is a memory-mapped file shared by every job
+public final class ColorLookupTable {
+    private static final int FORMAT_VERSION = 1;
+    private static final int COLOR_COUNT = 1 << 24;
+    private static final int PAGE_BITS = 12;
+    private static final int MAX_PALETTE_SIZE = Short.MAX_VALUE - 1;
+    private static final Map<String, ColorLookupTable> TABLE_MAP = new ConcurrentHashMap<>();
+    private static volatile Path cacheDirectory;
+
+    // tables opened afterwards are persisted as <directory>/<fingerprint>.lut
+    public static void setCacheDirectory(Path directory) {
+        cacheDirectory = directory;
+    }
+
+    public static ColorLookupTable of(@NonNull List<LabColor> palette) {
+        final var fingerprint = fingerprint(palette);
+        final var directory = cacheDirectory;
+        final var key = (null == directory ? "" : directory.toAbsolutePath() + "/") + fingerprint;
+        return TABLE_MAP.computeIfAbsent(key, k -> new ColorLookupTable(palette, fingerprint, directory));
+    }
+
+    private static String fingerprint(List<LabColor> palette) {
+        var hash = 0xCBF29CE484222325L ^ FORMAT_VERSION;
+        for (final var color : palette) {
+            for (final var value : new double[] { color.getL(), color.getA(), color.getB() }) {
+                hash = (hash ^ Double.doubleToLongBits(value)) * 0x100000001B3L;
+                hash ^= hash >>> 29;
+            }
+        }
+        return String.format("%016x-%d", hash, palette.size());
+    }
+
+    private final LabColorIndex index;
+    private final LabPalette labPalette;
+    private final String fingerprint;
+    private final MappedByteBuffer mappedTable;
+    private final short[][] pages;
+
+    private ColorLookupTable(List<LabColor> palette, String fingerprint, Path directory) {
+        if (MAX_PALETTE_SIZE < palette.size()) {
+            throw new OcException("palette is too large : %d", palette.size());
+        }
+        index = LabColorIndex.of(palette);
+        labPalette = LabPalette.of(palette);
+        this.fingerprint = fingerprint;
+        if (null == directory) {
+            mappedTable = null;
+            pages = new short[COLOR_COUNT >> PAGE_BITS][];
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            try (var channel = FileChannel.open(directory.resolve(fingerprint + ".lut"), StandardOpenOption.CREATE,
+                                                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                mappedTable = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) COLOR_COUNT * Short.BYTES);
+                mappedTable.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pages = null;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // -1 for an empty palette, ties go to the lowest index
+    public int indexOf(@NonNull RgbColor rgbColor) {
+        return indexOf(rgbColor.getR(), rgbColor.getG(), rgbColor.getB());
+    }
+
+    public int indexOf(int r, int g, int b) {
+        final var rgb = (r << 16) | (g << 8) | b;
+        final var entry = read(rgb);
+        if (0 != entry) {
+            return entry - 1;
+        }
+        // a vectorized scan of the whole palette beats walking the tree
+        final var target = LabColor.of(RgbColor.of(r, g, b));
+        final var nearest = LabPalette.isVectorized() ? labPalette.nearest(target) : index.nearest(target);
+        if (0 <= nearest) {
+            write(rgb, nearest + 1);
+        }
+        return nearest;
+    }
+
+    private int read(int rgb) {
+        if (null != mappedTable) {
+            return mappedTable.getShort(rgb * Short.BYTES);
+        }
+        final var page = pages[rgb >>> PAGE_BITS];
+        return null == page ? 0 : page[rgb & ((1 << PAGE_BITS) - 1)];
+    }
+
+    private void write(int rgb, int entry) {
+        if (null != mappedTable) {
+            mappedTable.putShort(rgb * Short.BYTES, (short) entry);
+            return;
+        }
+        var page = pages[rgb >>> PAGE_BITS];
+        if (null == page) {
+            synchronized (pages) {
+                page = pages[rgb >>> PAGE_BITS];
+                if (null == page) {
+                    page = new short[1 << PAGE_BITS];
+                    pages[rgb >>> PAGE_BITS] = page;
+                }
+            }
+        }
+        page[rgb & ((1 << PAGE_BITS) - 1)] = (short) entry;
+    }
+}
@@ -0,0 +1,188 @@
+package com.ongakucraft.core.color;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// kd-tree over lab coordinates for nearest color by CIEDE2000, same answer as a linear scan including ties.
+// boxes are pruned by a lower bound of CIEDE2000:
+//   SL <= SLmax, SH <= SC <= 1 + 0.045 * 1.5 * (C1 + C2) / 2 because a' <= 1.5a and T < 3,
+//   dC'^2 + dH'^2 >= da^2 + db^2, and the RT cross term takes at most sin(60deg) of the chroma and hue part
+public final class LabColorIndex {
+    private static final int LEAF_SIZE = 8;
+    private static final double CROSS_TERM_FACTOR = 0.13;
+    // rounding in calculateDeltaE must never prune the true nearest color
+    private static final double SLACK = 1 - 1e-9;
+
+    public static LabColorIndex of(@NonNull List<LabColor> palette) {
+        return new LabColorIndex(palette);
+    }
+
+    private final LabColor[] palette;
+    // palette order, points of a node are contiguous
+    private final int[] indices;
+    // nodes: point range, children (-1 for leaves), bounding box and max chroma
+    private int nodeCount;
+    private int[] starts;
+    private int[] ends;
+    private int[] lefts;
+    private int[] rights;
+    private double[] boxes;
+    private double[] maxChromas;
+    private final double maxLDeviation;
+
+    private LabColorIndex(List<LabColor> palette) {
+        this.palette = palette.toArray(LabColor[]::new);
+        final var size = this.palette.length;
+        indices = IntStream.range(0, size).toArray();
+        final var capacity = 4 * size / LEAF_SIZE + 1;
+        starts = new int[capacity];
+        ends = new int[capacity];
+        lefts = new int[capacity];
+        rights = new int[capacity];
+        boxes = new double[capacity * 6];
+        maxChromas = new double[capacity];
+        var maxLDeviation = 0.0;
+        for (final var color : this.palette) {
+            maxLDeviation = Math.max(maxLDeviation, Math.abs(color.getL() - 50));
+        }
+        this.maxLDeviation = maxLDeviation;
+        if (0 < size) {
+            build(0, size);
+        }
+    }
+
+    public int size() {
+        return palette.length;
+    }
+
+    // index into the palette, -1 when it is empty
+    public int nearest(@NonNull LabColor target) {
+        if (0 == palette.length) {
+            return -1;
+        }
+        final var search = new Search(target);
+        search.visit(0);
+        return search.bestIndex;
+    }
+
+    private final class Search {
+        private final LabColor target;
+        private final double l;
+        private final double a;
+        private final double b;
+        private final double chroma;
+        private final double maxSl;
+        private double bestDistance = Double.MAX_VALUE;
+        private int bestIndex = -1;
+
+        private Search(LabColor target) {
+            this.target = target;
+            l = target.getL();
+            a = target.getA();
+            b = target.getB();
+            chroma = Math.sqrt(a * a + b * b);
+            final var deviation = Math.max(Math.abs(l - 50), maxLDeviation);
+            maxSl = 1 + 0.015 * deviation * deviation / Math.sqrt(20 + deviation * deviation);
+        }
+
+        private void visit(int node) {
+            if (-1 == lefts[node]) {
+                for (var i = starts[node]; i < ends[node]; ++i) {
+                    final var index = indices[i];
+                    final var distance = target.distance(palette[index]);
+                    if (distance < bestDistance || distance == bestDistance && index < bestIndex) {
+                        bestDistance = distance;
+                        bestIndex = index;
+                    }
+                }
+                return;
+            }
+            final var leftBound = lowerBound(lefts[node]);
+            final var rightBound = lowerBound(rights[node]);
+            final var near = leftBound <= rightBound ? lefts[node] : rights[node];
+            final var far = leftBound <= rightBound ? rights[node] : lefts[node];
+            if (Math.min(leftBound, rightBound) <= bestDistance) {
+                visit(near);
+            }
+            if (Math.max(leftBound, rightBound) <= bestDistance) {
+                visit(far);
+            }
+        }
+
+        private double lowerBound(int node) {
+            final var box = node * 6;
+            final var dl = gap(l, boxes[box], boxes[box + 1]);
+            final var da = gap(a, boxes[box + 2], boxes[box + 3]);
+            final var db = gap(b, boxes[box + 4], boxes[box + 5]);
+            final var maxSc = 1 + 0.045 * 0.75 * (chroma + maxChromas[node]);
+            final var dL = dl / maxSl;
+            return Math.sqrt(dL * dL + CROSS_TERM_FACTOR * (da * da + db * db) / (maxSc * maxSc)) * SLACK;
+        }
+    }
+
+    private static double gap(double value, double min, double max) {
+        return value < min ? min - value : max < value ? value - max : 0;
+    }
+
+    private int build(int start, int end) {
+        final var node = nodeCount++;
+        if (starts.length == node) {
+            grow();
+        }
+        starts[node] = start;
+        ends[node] = end;
+        final var box = node * 6;
+        for (var dim = 0; dim < 3; ++dim) {
+            boxes[box + dim * 2] = Double.MAX_VALUE;
+            boxes[box + dim * 2 + 1] = -Double.MAX_VALUE;
+        }
+        var maxChroma = 0.0;
+        for (var i = start; i < end; ++i) {
+            final var color = palette[indices[i]];
+            for (var dim = 0; dim < 3; ++dim) {
+                final var value = coordinate(color, dim);
+                boxes[box + dim * 2] = Math.min(boxes[box + dim * 2], value);
+                boxes[box + dim * 2 + 1] = Math.max(boxes[box + dim * 2 + 1], value);
+            }
+            maxChroma = Math.max(maxChroma, Math.sqrt(color.getA() * color.getA() + color.getB() * color.getB()));
+        }
+        maxChromas[node] = maxChroma;
+        if (end - start <= LEAF_SIZE) {
+            lefts[node] = -1;
+            rights[node] = -1;
+            return node;
+        }
+        var splitDim = 0;
+        for (var dim = 1; dim < 3; ++dim) {
+            if (boxes[box + splitDim * 2 + 1] - boxes[box + splitDim * 2] < boxes[box + dim * 2 + 1] - boxes[box + dim * 2]) {
+                splitDim = dim;
+            }
+        }
+        final var dim = splitDim;
+        final var sorted = IntStream.range(start, end).map(i -> indices[i]).boxed()
+                                    .sorted((i, j) -> Double.compare(coordinate(palette[i], dim), coordinate(palette[j], dim)))
+                                    .mapToInt(Integer::intValue).toArray();
+        System.arraycopy(sorted, 0, indices, start, sorted.length);
+        final var middle = (start + end) >>> 1;
+        lefts[node] = build(start, middle);
+        rights[node] = build(middle, end);
+        return node;
+    }
+
+    private void grow() {
+        final var capacity = starts.length * 2;
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        lefts = Arrays.copyOf(lefts, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        boxes = Arrays.copyOf(boxes, capacity * 6);
+        maxChromas = Arrays.copyOf(maxChromas, capacity);
+    }
+
+    private static double coordinate(LabColor color, int dim) {
+        return 0 == dim ? color.getL() : 1 == dim ? color.getA() : color.getB();
+    }
+}
@@ -0,0 +1,76 @@
+package com.ongakucraft.core.color;
+
+// sRGB -> CIE-L*a*b* (2 degree D65) of ColorConverter.RGBtoLAB with a 256 entry linearization table
+// and a cube root of two Halley steps. results are within MAX_ERROR of RGBtoLAB for every 24-bit color,
+// checked exhaustively, use LabColor.of(RgbColor) where the exact value matters
+public final class LabConverter {
+    public static final double MAX_ERROR = 1e-9;
+    private static final double EPSILON = 0.008856;
+    private static final double[] LINEAR = new double[256];
+    private static final double X_WHITE = Illuminant.CIE2.D65[0];
+    private static final double Y_WHITE = Illuminant.CIE2.D65[1];
+    private static final double Z_WHITE = Illuminant.CIE2.D65[2];
+
+    static {
+        for (var i = 0; i < LINEAR.length; ++i) {
+            final var value = i / 255D;
+            LINEAR[i] = (value > 0.04045 ? Math.pow((value + 0.055D) / 1.055D, 2.4D) : value / 12.92D) * 100;
+        }
+    }
+
+    public static LabColor toLabColor(int r, int g, int b) {
+        final var lab = new double[3];
+        toLab(r, g, b, lab, 0);
+        return LabColor.of(lab[0], lab[1], lab[2]);
+    }
+
+    // lab receives l, a, b at offset
+    public static void toLab(int r, int g, int b, double[] lab, int offset) {
+        final var lr = LINEAR[r];
+        final var lg = LINEAR[g];
+        final var lb = LINEAR[b];
+        final var x = f((0.412453D * lr + 0.35758D * lg + 0.180423D * lb) / X_WHITE);
+        final var y = f((0.212671D * lr + 0.71516D * lg + 0.072169D * lb) / Y_WHITE);
+        final var z = f((0.019334D * lr + 0.119193D * lg + 0.950227D * lb) / Z_WHITE);
+        // keeps white inside the range LabColor.of accepts
+        lab[offset] = Math.min(100, 116 * y - 16);
+        lab[offset + 1] = 500 * (x - y);
+        lab[offset + 2] = 200 * (y - z);
+    }
+
+    // alpha is ignored, lab receives 3 values per pixel at full precision
+    public static void toLab(int[] argb, double[] lab) {
+        for (var i = 0; i < argb.length; ++i) {
+            final var pixel = argb[i];
+            toLab((pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF, lab, i * 3);
+        }
+    }
+
+    // alpha is ignored, lab receives 3 values per pixel rounded to float, about 1e-5 off,
+    // so sums and stored values go through the double overload
+    public static void toLab(int[] argb, float[] lab) {
+        final var buffer = new double[3];
+        for (var i = 0; i < argb.length; ++i) {
+            final var pixel = argb[i];
+            toLab((pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF, buffer, 0);
+            lab[i * 3] = (float) buffer[0];
+            lab[i * 3 + 1] = (float) buffer[1];
+            lab[i * 3 + 2] = (float) buffer[2];
+        }
+    }
+
+    private static double f(double t) {
+        return t > EPSILON ? cbrt(t) : 7.787036 * t + 0.1379310344827586;
+    }
+
+    // bit level guess within a few percent, each Halley step triples the correct digits
+    static double cbrt(double t) {
+        var x = Double.longBitsToDouble(Double.doubleToRawLongBits(t) / 3 + 0x2A9F7893782DA1CEL);
+        var x3 = x * x * x;
+        x *= (x3 + 2 * t) / (2 * x3 + t);
+        x3 = x * x * x;
+        return x * (x3 + 2 * t) / (2 * x3 + t);
+    }
+
+    private LabConverter() {}
+}
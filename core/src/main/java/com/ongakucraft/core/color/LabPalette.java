@@ -0,0 +1,114 @@
+package com.ongakucraft.core.color;
+
+import lombok.NonNull;
+
+import java.util.List;
+
+// palette as parallel arrays so that one target can be scored against every entry in a single pass.
+// the vector kernel in src/vector is used when jdk.incubator.vector is loaded (--add-modules jdk.incubator.vector),
+// its float distances are within MAX_KERNEL_ERROR of calculateDeltaE, nearest() rescoring makes the answer exact
+public final class LabPalette {
+    static final float MAX_KERNEL_ERROR = 0.05f;
+    private static final Kernel KERNEL = loadKernel();
+
+    interface Kernel {
+        void distances(LabPalette palette, double l, double a, double b, float[] out);
+    }
+
+    public static LabPalette of(@NonNull List<LabColor> colors) {
+        return new LabPalette(colors);
+    }
+
+    public static boolean isVectorized() {
+        return !(KERNEL instanceof ScalarKernel);
+    }
+
+    private static Kernel loadKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernel) Class.forName("com.ongakucraft.core.color.LabPaletteVectorKernel")
+                                     .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar kernel
+            }
+        }
+        return new ScalarKernel();
+    }
+
+    final double[] ls;
+    final double[] as;
+    final double[] bs;
+    final float[] lFloats;
+    final float[] aFloats;
+    final float[] bFloats;
+    final float[] chromaFloats;
+
+    private LabPalette(List<LabColor> colors) {
+        final var size = colors.size();
+        ls = new double[size];
+        as = new double[size];
+        bs = new double[size];
+        lFloats = new float[size];
+        aFloats = new float[size];
+        bFloats = new float[size];
+        chromaFloats = new float[size];
+        for (var i = 0; i < size; ++i) {
+            final var color = colors.get(i);
+            ls[i] = color.getL();
+            as[i] = color.getA();
+            bs[i] = color.getB();
+            lFloats[i] = (float) ls[i];
+            aFloats[i] = (float) as[i];
+            bFloats[i] = (float) bs[i];
+            chromaFloats[i] = (float) Math.sqrt(as[i] * as[i] + bs[i] * bs[i]);
+        }
+    }
+
+    public int size() {
+        return ls.length;
+    }
+
+    // out[i] is CIEDE2000 between target and entry i, to within MAX_KERNEL_ERROR
+    public void distances(@NonNull LabColor target, float[] out) {
+        KERNEL.distances(this, target.getL(), target.getA(), target.getB(), out);
+    }
+
+    // same answer as a linear scan with calculateDeltaE, ties go to the lowest index. -1 for an empty palette
+    public int nearest(@NonNull LabColor target) {
+        return nearest(target, new float[size()]);
+    }
+
+    public int nearest(@NonNull LabColor target, float[] scratch) {
+        final var size = size();
+        if (0 == size) {
+            return -1;
+        }
+        distances(target, scratch);
+        var min = Float.MAX_VALUE;
+        for (var i = 0; i < size; ++i) {
+            min = Math.min(min, scratch[i]);
+        }
+        final var limit = min + 2 * MAX_KERNEL_ERROR;
+        var bestDistance = Double.MAX_VALUE;
+        var bestIndex = -1;
+        for (var i = 0; i < size; ++i) {
+            if (scratch[i] <= limit) {
+                final var distance = CIEDE2000.calculateDeltaE(target.getL(), target.getA(), target.getB(), ls[i], as[i], bs[i]);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestIndex = i;
+                }
+            }
+        }
+        return bestIndex;
+    }
+
+    private static final class ScalarKernel implements Kernel {
+        @Override
+        public void distances(LabPalette palette, double l, double a, double b, float[] out) {
+            for (var i = 0; i < palette.size(); ++i) {
+                out[i] = (float) CIEDE2000.calculateDeltaE(l, a, b, palette.ls[i], palette.as[i], palette.bs[i]);
+            }
+        }
+    }
+}
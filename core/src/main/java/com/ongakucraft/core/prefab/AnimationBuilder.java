@@ -1,11 +1,12 @@
 package com.ongakucraft.core.prefab;
 
 import com.ongakucraft.core.block.Block;
+import com.ongakucraft.core.structure.Structure;
+import com.ongakucraft.core.structure.StructureDelta;
 import lombok.NonNull;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 public final class AnimationBuilder {
     public static List<Block[][]> diffBlockGridList(List<Block[][]> blockGridList) {
@@ -20,6 +21,17 @@ public final class AnimationBuilder {
         return diffList;
     }
 
+    public static List<StructureDelta> diffStructureList(List<Structure> structureList) {
+        final List<StructureDelta> diffList = new ArrayList<>();
+        final var size = structureList.size();
+        for (var i = 0; i < size; ++i) {
+            final var src = structureList.get(i % size);
+            final var dist = structureList.get((i + 1) % size);
+            diffList.add(StructureDelta.diff(src, dist));
+        }
+        return diffList;
+    }
+
     public static Block[][] diffBlockGrid(@NonNull Block[][] src, @NonNull Block[][] dist) {
         final var h = src.length;
         final var w = src[0].length;
@@ -27,7 +39,7 @@ public final class AnimationBuilder {
         for (var y = 0; y < h; ++y) {
             diff[y] = new Block[w];
             for (var x = 0; x < w; ++x) {
-                if (Objects.equals(src[y][x], dist[y][x])) {
+                if (null == src[y][x] ? null == dist[y][x] : src[y][x].isSameState(dist[y][x])) {
                     continue;
                 }
                 diff[y][x] = dist[y][x];
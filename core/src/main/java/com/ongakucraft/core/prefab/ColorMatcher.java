@@ -0,0 +1,66 @@
+package com.ongakucraft.core.prefab;
+
+import com.ongakucraft.core.color.ColorLookupTable;
+import com.ongakucraft.core.color.RgbColor;
+
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+// matches an image band by band in parallel, the lookup table is the shared color cache.
+// a band only writes its own rows, so the result is the same as a sequential walk
+final class ColorMatcher {
+    static final int BAND_HEIGHT = 16;
+
+    // palette index per pixel, -1 for null pixels
+    static int[][] match(RgbColor[][] image, ColorLookupTable lookupTable) {
+        final var indexGrid = new int[image.length][];
+        forEachBand(image.length, (start, end) -> {
+            for (var y = start; y < end; ++y) {
+                final var row = image[y];
+                final var indexRow = new int[row.length];
+                for (var x = 0; x < row.length; ++x) {
+                    indexRow[x] = null == row[x] ? -1 : lookupTable.indexOf(row[x]);
+                }
+                indexGrid[y] = indexRow;
+            }
+        });
+        return indexGrid;
+    }
+
+    // resolves palette indices of every band with its own cache, resolve must return equal values for equal indices
+    static <T> T[][] resolve(int[][] indexGrid, int paletteSize, IntFunction<T> resolve, IntFunction<T[]> newRow,
+                             IntFunction<T[][]> newGrid) {
+        final var grid = newGrid.apply(indexGrid.length);
+        forEachBand(indexGrid.length, (start, end) -> {
+            final var cache = newRow.apply(paletteSize);
+            for (var y = start; y < end; ++y) {
+                final var indexRow = indexGrid[y];
+                final var row = newRow.apply(indexRow.length);
+                for (var x = 0; x < indexRow.length; ++x) {
+                    final var index = indexRow[x];
+                    if (0 <= index) {
+                        if (null == cache[index]) {
+                            cache[index] = resolve.apply(index);
+                        }
+                        row[x] = cache[index];
+                    }
+                }
+                grid[y] = row;
+            }
+        });
+        return grid;
+    }
+
+    private interface BandTask {
+        void run(int start, int end);
+    }
+
+    private static void forEachBand(int height, BandTask task) {
+        final var bandCount = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        final var bandStream = IntStream.range(0, bandCount);
+        (bandCount < 2 ? bandStream : bandStream.parallel())
+                .forEach(band -> task.run(band * BAND_HEIGHT, Math.min(height, (band + 1) * BAND_HEIGHT)));
+    }
+
+    private ColorMatcher() {}
+}
@@ -0,0 +1,159 @@
+package com.ongakucraft.core.prefab;
+
+import com.ongakucraft.core.OcException;
+import com.ongakucraft.core.color.LabColor;
+import com.ongakucraft.core.color.LabColorIndex;
+import com.ongakucraft.core.color.LabConverter;
+import com.ongakucraft.core.color.LabPalette;
+import com.ongakucraft.core.color.RgbColor;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// dithering in lab space over a stream of rows. error diffusion keeps a ring with one error row per kernel row,
+// two for floyd-steinberg and three for atkinson, so memory does not grow with the image height
+public final class Ditherer {
+    public static final Ditherer FLOYD_STEINBERG = new Ditherer(new int[] { 1, -1, 0, 1 }, new int[] { 0, 1, 1, 1 },
+                                                                new float[] { 7 / 16f, 3 / 16f, 5 / 16f, 1 / 16f }, 0);
+    // only 6/8 of the error is passed on, which keeps flat areas clean
+    public static final Ditherer ATKINSON = new Ditherer(new int[] { 1, 2, -1, 0, 1, 0 }, new int[] { 0, 0, 1, 1, 1, 2 },
+                                                         new float[] { 1 / 8f, 1 / 8f, 1 / 8f, 1 / 8f, 1 / 8f, 1 / 8f }, 0);
+    private static final int BAYER_BITS = 3;
+    private static final int BAYER_LENGTH = 1 << BAYER_BITS;
+    private static final float[] BAYER_OFFSETS = new float[BAYER_LENGTH * BAYER_LENGTH];
+    private static final int PADDING = 2;
+
+    static {
+        for (var y = 0; y < BAYER_LENGTH; ++y) {
+            for (var x = 0; x < BAYER_LENGTH; ++x) {
+                var rank = 0;
+                for (var bit = 0; bit < BAYER_BITS; ++bit) {
+                    rank = (rank << 2) | ((((x ^ y) >> bit) & 1) << 1) | ((x >> bit) & 1);
+                }
+                BAYER_OFFSETS[y * BAYER_LENGTH + x] = (rank + 0.5f) / BAYER_OFFSETS.length - 0.5f;
+            }
+        }
+    }
+
+    // ordered dithering, spread is the lab distance the threshold map covers, about the gap between neighbor palette colors
+    public static Ditherer bayer(double spread) {
+        if (spread <= 0) {
+            throw new OcException("spread should be positive : %f", spread);
+        }
+        return new Ditherer(new int[0], new int[0], new float[0], (float) spread);
+    }
+
+    public interface RowSink {
+        // palette index per pixel, -1 for transparent pixels
+        void accept(int y, int[] indices);
+    }
+
+    private final int[] dxs;
+    private final int[] dys;
+    private final float[] weights;
+    private final float spread;
+    private final int errorRowCount;
+
+    private Ditherer(int[] dxs, int[] dys, float[] weights, float spread) {
+        this.dxs = dxs;
+        this.dys = dys;
+        this.weights = weights;
+        this.spread = spread;
+        var maxDy = 0;
+        for (final var dy : dys) {
+            maxDy = Math.max(maxDy, dy);
+        }
+        errorRowCount = maxDy + 1;
+    }
+
+    public int[][] dither(@NonNull RgbColor[][] image, @NonNull List<LabColor> palette) {
+        final var h = image.length;
+        final var w = 0 == h ? 0 : image[0].length;
+        final var indexGrid = new int[h][];
+        final var argbRow = new int[w];
+        dither(w, h, y -> {
+            for (var x = 0; x < w; ++x) {
+                final var rgbColor = image[y][x];
+                argbRow[x] = null == rgbColor ? 0 : 0xFF000000 | (rgbColor.getR() << 16) | (rgbColor.getG() << 8) | rgbColor.getB();
+            }
+            return argbRow;
+        }, palette, (y, indices) -> indexGrid[y] = indices);
+        return indexGrid;
+    }
+
+    // rows are requested top to bottom and may be reused by the source, alpha 0 marks a transparent pixel
+    public void dither(int width, int height, @NonNull IntFunction<int[]> rowSource, @NonNull List<LabColor> palette,
+                       @NonNull RowSink sink) {
+        final var matcher = new Matcher(palette);
+        final var rowWidth = (width + PADDING * 2) * 3;
+        final var errors = new float[errorRowCount][rowWidth];
+        final var labRow = new float[width * 3];
+        final var target = new double[3];
+        for (var y = 0; y < height; ++y) {
+            final var argbRow = rowSource.apply(y);
+            if (width != argbRow.length) {
+                throw new OcException("row %d should have %d pixels : %d", y, width, argbRow.length);
+            }
+            LabConverter.toLab(argbRow, labRow);
+            final var error = errors[y % errorRowCount];
+            final var indices = new int[width];
+            for (var x = 0; x < width; ++x) {
+                if (0 == (argbRow[x] >>> 24)) {
+                    indices[x] = -1;
+                    continue;
+                }
+                final var offset = spread * BAYER_OFFSETS[(y & (BAYER_LENGTH - 1)) * BAYER_LENGTH + (x & (BAYER_LENGTH - 1))];
+                final var cell = (x + PADDING) * 3;
+                target[0] = clamp(labRow[x * 3] + error[cell] + offset, 0, 100);
+                target[1] = clamp(labRow[x * 3 + 1] + error[cell + 1] + offset, -128, 127);
+                target[2] = clamp(labRow[x * 3 + 2] + error[cell + 2] + offset, -128, 127);
+                final var index = matcher.nearest(target);
+                indices[x] = index;
+                if (index < 0) {
+                    continue;
+                }
+                for (var k = 0; k < weights.length; ++k) {
+                    final var errorRow = errors[(y + dys[k]) % errorRowCount];
+                    final var errorCell = (x + dxs[k] + PADDING) * 3;
+                    for (var c = 0; c < 3; ++c) {
+                        errorRow[errorCell + c] += (float) (target[c] - matcher.colors[index * 3 + c]) * weights[k];
+                    }
+                }
+            }
+            // the row just finished becomes the farthest row below
+            Arrays.fill(error, 0);
+            sink.accept(y, indices);
+        }
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // nearest color with the vectorized palette scan when available, the kd-tree otherwise
+    private static final class Matcher {
+        private final LabPalette labPalette;
+        private final LabColorIndex index;
+        private final double[] colors;
+        private final float[] scratch;
+
+        private Matcher(List<LabColor> palette) {
+            labPalette = LabPalette.of(palette);
+            index = LabColorIndex.of(palette);
+            colors = new double[palette.size() * 3];
+            for (var i = 0; i < palette.size(); ++i) {
+                colors[i * 3] = palette.get(i).getL();
+                colors[i * 3 + 1] = palette.get(i).getA();
+                colors[i * 3 + 2] = palette.get(i).getB();
+            }
+            scratch = new float[palette.size()];
+        }
+
+        private int nearest(double[] target) {
+            final var labColor = LabColor.of(target[0], target[1], target[2]);
+            return LabPalette.isVectorized() ? labPalette.nearest(labColor, scratch) : index.nearest(labColor);
+        }
+    }
+}
@@ -1,88 +1,114 @@
 package com.ongakucraft.core.prefab;
 
 import com.ongakucraft.core.OcException;
+import com.ongakucraft.core.block.Block;
 import com.ongakucraft.core.block.BlockDataset;
 import com.ongakucraft.core.block.Direction;
 import com.ongakucraft.core.block.color.BlockMapColor;
-import com.ongakucraft.core.color.LabColor;
+import com.ongakucraft.core.color.ColorLookupTable;
 import com.ongakucraft.core.color.RgbColor;
-import com.ongakucraft.core.structure.Position;
 import com.ongakucraft.core.structure.Structure;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 
 public final class MapArtBuilder {
     public static final int BLOCK_LENGTH_PER_MAP = 128;
+    // build height of an overworld from 1.18 on
+    public static final int MAX_WORLD_HEIGHT = 384;
 
     public static Structure buildMap(RgbColor[][] image, List<BlockMapColor> blockMapColorList, BlockDataset blockDataset) {
-        final var rgbToMapColor = buildMapColorByLabColor(image, blockMapColorList);
-        final var h = image.length;
-        final var w = image[0].length;
+        return buildMap(image, blockMapColorList, blockDataset, MAX_WORLD_HEIGHT);
+    }
+
+    // shades are picked so that the map, supports included, is at most maxHeight blocks tall
+    public static Structure buildMap(RgbColor[][] image, List<BlockMapColor> blockMapColorList, BlockDataset blockDataset,
+                                     int maxHeight) {
+        validateImage(image);
+        if (maxHeight < 2) {
+            throw new OcException("max height should be at least 2 : %d", maxHeight);
+        }
+        // the lowest level is kept for supports under blocks that are not full
+        final var staircase = MapStaircase.solve(image, blockMapColorList, maxHeight - 1);
+        return placeStaircase(staircase, blockMapColorList, blockDataset);
+    }
+
+    // ditherer may be null for plain nearest color matching, shades then come from the matched colors as they are
+    public static Structure buildMap(RgbColor[][] image, List<BlockMapColor> blockMapColorList, BlockDataset blockDataset,
+                                     Ditherer ditherer) {
+        validateImage(image);
+        final var palette = blockMapColorList.stream().map(BlockMapColor::getLabColor).toList();
+        final var indexGrid = null == ditherer ? ColorMatcher.match(image, ColorLookupTable.of(palette))
+                                               : ditherer.dither(image, palette);
+        final var staircase = MapStaircase.follow(indexGrid, blockMapColorList, MAX_WORLD_HEIGHT - 1);
+        return placeStaircase(staircase, blockMapColorList, blockDataset);
+    }
+
+    // every column is lowered until its lowest block, supports included, sits on y = 0
+    private static Structure placeStaircase(MapStaircase staircase, List<BlockMapColor> blockMapColorList,
+                                            BlockDataset blockDataset) {
+        final var h = staircase.indices.length;
+        final var w = staircase.indices[0].length;
         final var structure = new Structure();
         final var grassBlock = blockDataset.getBlock("grass_block");
+        final var blocks = new Block[blockMapColorList.size()];
+        final var needsSupport = new boolean[blockMapColorList.size()];
         for (var x = 0; x < w; ++x) {
-            final var slice = new Structure();
-            var y = 0;
-            slice.put(Position.of(x, y, -1), grassBlock);
+            var bottom = staircase.levels[0][x];
             for (var z = 0; z < h; ++z) {
-                final var rgbColor = image[z][x];
-                final var mapColor = rgbToMapColor.get(rgbColor);
-                y += mapColor.getGradient();
-                final var position = Position.of(x, y, z);
-                final var block = blockDataset.getBlock(mapColor.getBlockId());
-                if (mapColor.getBlockId().getPath().endsWith("_leaves")) {
-                    slice.put(position, block.putProperty("persistent", true));
-                } else {
-                    slice.put(position, block);
+                final var index = staircase.indices[z][x];
+                if (null == blocks[index]) {
+                    final var mapColor = blockMapColorList.get(index);
+                    final var block = blockDataset.getBlock(mapColor.getBlockId());
+                    blocks[index] = mapColor.getBlockId().getPath().endsWith("_leaves") ? block.putProperty("persistent", true) : block;
+                    needsSupport[index] = !blockDataset.getBlockDefine(block.getId()).isCollisionShapeFullBlock();
                 }
-                if (!blockDataset.getBlockDefine(block.getId()).isCollisionShapeFullBlock()) {
-                    slice.put(position.jump(-1), grassBlock);
+                bottom = Math.min(bottom, staircase.levels[z + 1][x] - (needsSupport[index] ? 1 : 0));
+            }
+            structure.put(x, staircase.levels[0][x] - bottom, -1, grassBlock);
+            for (var z = 0; z < h; ++z) {
+                final var index = staircase.indices[z][x];
+                final var y = staircase.levels[z + 1][x] - bottom;
+                structure.put(x, y, z, blocks[index]);
+                if (needsSupport[index]) {
+                    structure.put(x, y - 1, z, grassBlock);
                 }
             }
-            slice.regulate();
-            slice.translate(x, 0, -1);
-            structure.paste(slice);
         }
         return surroundWater(structure, blockDataset);
     }
 
     public static Structure surroundWater(Structure structure, BlockDataset blockDataset) {
-        structure = structure.clone();
+        final var surrounded = structure.clone();
         final var barrierBlock = blockDataset.getBlock("barrier");
         final var dirs = List.of(Direction.E, Direction.S, Direction.W, Direction.N);
-        for (final var position : structure.getPositionList()) {
-            final var block = structure.get(position);
+        structure.forEach((x, y, z, block) -> {
             if ("water".equals(block.getId().getPath())) {
                 for (final var dir : dirs) {
-                    final var neighborPosition = position.step(dir, 1);
-                    if (!structure.has(neighborPosition)) {
-                        structure.put(neighborPosition, barrierBlock);
+                    final var nx = x + dir.getX();
+                    final var nz = z + dir.getZ();
+                    if (!surrounded.has(nx, y, nz)) {
+                        surrounded.put(nx, y, nz, barrierBlock);
                     }
                 }
             }
-        }
-        return structure;
+        });
+        return surrounded;
     }
 
     public static BlockMapColor[][] buildColorMap(RgbColor[][] image, List<BlockMapColor> blockMapColorList) {
-        final var rgbToMapColor = buildMapColorByLabColor(image, blockMapColorList);
-        final var h = image.length;
-        final var w = image[0].length;
-        final var colorMap = new BlockMapColor[h][w];
-        for (var x = 0; x < w; ++x) {
-            for (var z = 0; z < h; ++z) {
-                final var rgbColor = image[z][x];
-                final var mapColor = rgbToMapColor.get(rgbColor);
-                colorMap[z][x] = mapColor;
-            }
-        }
-        return colorMap;
+        return buildColorMap(image, blockMapColorList, null);
     }
 
-    private static Map<RgbColor, BlockMapColor> buildMapColorByLabColor(RgbColor[][] image, List<BlockMapColor> blockMapColorList) {
+    public static BlockMapColor[][] buildColorMap(RgbColor[][] image, List<BlockMapColor> blockMapColorList, Ditherer ditherer) {
+        validateImage(image);
+        final var palette = blockMapColorList.stream().map(BlockMapColor::getLabColor).toList();
+        final var indexGrid = null == ditherer ? ColorMatcher.match(image, ColorLookupTable.of(palette))
+                                               : ditherer.dither(image, palette);
+        return ColorMatcher.resolve(indexGrid, blockMapColorList.size(), blockMapColorList::get,
+                                    BlockMapColor[]::new, BlockMapColor[][]::new);
+    }
+
+    private static void validateImage(RgbColor[][] image) {
         final var h = image.length;
         if (BLOCK_LENGTH_PER_MAP != h) {
             throw new OcException("height of image should be %d : %d", BLOCK_LENGTH_PER_MAP, h);
@@ -99,36 +125,6 @@ public final class MapArtBuilder {
                 }
             }
         }
-        return findMapColorByLabColor(image, blockMapColorList);
-    }
-
-    private static Map<RgbColor, BlockMapColor> findMapColorByLabColor(RgbColor[][] image, List<BlockMapColor> blockMapColorList) {
-        final Map<RgbColor, BlockMapColor> rgbToMapColor = new HashMap<>();
-        for (final var row : image) {
-            for (final var rgbColor : row) {
-                if (null == rgbColor || rgbToMapColor.containsKey(rgbColor)) {
-                    continue;
-                }
-                final var blockMapColorOptional = findBlockIdByLabColor(rgbColor, blockMapColorList);
-                blockMapColorOptional.ifPresent(blockId -> rgbToMapColor.put(rgbColor, blockId));
-            }
-        }
-        return rgbToMapColor;
-    }
-
-    private static Optional<BlockMapColor> findBlockIdByLabColor(RgbColor rgbColor, List<BlockMapColor> blockMapColorList) {
-        final var targetColor = LabColor.of(rgbColor);
-        var minDeviation = Double.MAX_VALUE;
-        BlockMapColor minBlockMapColor = null;
-        for (final var blockMapColor : blockMapColorList) {
-            final var blockColor = blockMapColor.getLabColor();
-            final var deviation = targetColor.distance(blockColor);
-            if (deviation < minDeviation) {
-                minDeviation = deviation;
-                minBlockMapColor = blockMapColor;
-            }
-        }
-        return Optional.ofNullable(minBlockMapColor);
     }
 
     private MapArtBuilder() {}
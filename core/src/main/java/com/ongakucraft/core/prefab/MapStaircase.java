@@ -0,0 +1,134 @@
+package com.ongakucraft.core.prefab;
+
+import com.ongakucraft.core.OcException;
+import com.ongakucraft.core.block.color.BlockMapColor;
+import com.ongakucraft.core.color.ColorLookupTable;
+import com.ongakucraft.core.color.LabColor;
+import com.ongakucraft.core.color.RgbColor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// block levels of a map art, column by column from north to south. the reference block north of the map sits in
+// levels[0], pixel z in levels[z + 1], and the shade of a pixel is the step from the level before it
+final class MapStaircase {
+    final int[][] indices;
+    final int[][] levels;
+
+    private MapStaircase(int[][] indices, int[][] levels) {
+        this.indices = indices;
+        this.levels = levels;
+    }
+
+    // levels follow the gradients of fixed colors, fails when a column does not fit in levelCount levels
+    static MapStaircase follow(int[][] indices, List<BlockMapColor> blockMapColorList, int levelCount) {
+        final var h = indices.length;
+        final var w = indices[0].length;
+        final var levels = new int[h + 1][w];
+        for (var x = 0; x < w; ++x) {
+            var level = 0;
+            var min = 0;
+            var max = 0;
+            for (var z = 0; z < h; ++z) {
+                level += blockMapColorList.get(indices[z][x]).getGradient();
+                levels[z + 1][x] = level;
+                min = Math.min(min, level);
+                max = Math.max(max, level);
+            }
+            if (levelCount < max - min + 1) {
+                throw new OcException("column %d needs %d levels, more than %d", x, max - min + 1, levelCount);
+            }
+            for (var z = 0; z <= h; ++z) {
+                levels[z][x] -= min;
+            }
+        }
+        return new MapStaircase(indices, levels);
+    }
+
+    // picks the shade of every pixel by dynamic programming over levels per column, minimizing the total CIEDE2000
+    // error while the column stays in [0, levelCount). with enough levels every pixel gets its nearest color
+    static MapStaircase solve(RgbColor[][] image, List<BlockMapColor> blockMapColorList, int levelCount) {
+        final var h = image.length;
+        final var w = image[0].length;
+        final var gradients = blockMapColorList.stream().mapToInt(BlockMapColor::getGradient).distinct().sorted().toArray();
+        if (0 == gradients.length) {
+            throw new OcException("map color list should not be empty : %d", 0);
+        }
+        // best color and its error for every pixel and gradient
+        final var candidates = new int[gradients.length][][];
+        final var errors = new double[gradients.length][h][w];
+        final var labImage = new LabColor[h][];
+        IntStream.range(0, h).parallel().forEach(z -> labImage[z] = Arrays.stream(image[z]).map(LabColor::of).toArray(LabColor[]::new));
+        for (var g = 0; g < gradients.length; ++g) {
+            final List<Integer> listIndices = new ArrayList<>();
+            for (var i = 0; i < blockMapColorList.size(); ++i) {
+                if (gradients[g] == blockMapColorList.get(i).getGradient()) {
+                    listIndices.add(i);
+                }
+            }
+            final var lookupTable = ColorLookupTable.of(listIndices.stream().map(i -> blockMapColorList.get(i).getLabColor()).toList());
+            final var subIndices = ColorMatcher.match(image, lookupTable);
+            final var error = errors[g];
+            for (var z = 0; z < h; ++z) {
+                for (var x = 0; x < w; ++x) {
+                    subIndices[z][x] = listIndices.get(subIndices[z][x]);
+                    error[z][x] = labImage[z][x].distance(blockMapColorList.get(subIndices[z][x]).getLabColor());
+                }
+            }
+            candidates[g] = subIndices;
+        }
+        final var indices = new int[h][w];
+        final var levels = new int[h + 1][w];
+        IntStream.range(0, w).parallel().forEach(x -> solveColumn(x, gradients, candidates, errors, levelCount, indices, levels));
+        return new MapStaircase(indices, levels);
+    }
+
+    private static void solveColumn(int x, int[] gradients, int[][][] candidates, double[][][] errors, int levelCount,
+                                    int[][] indices, int[][] levels) {
+        final var h = errors[0].length;
+        // the reference block may sit on any level for free
+        var costs = new double[levelCount];
+        var nextCosts = new double[levelCount];
+        final var choices = new byte[h][levelCount];
+        for (var z = 0; z < h; ++z) {
+            for (var level = 0; level < levelCount; ++level) {
+                var best = Double.MAX_VALUE;
+                var choice = -1;
+                for (var g = 0; g < gradients.length; ++g) {
+                    final var from = level - gradients[g];
+                    if (from < 0 || levelCount <= from || Double.MAX_VALUE == costs[from]) {
+                        continue;
+                    }
+                    final var cost = costs[from] + errors[g][z][x];
+                    if (cost < best) {
+                        best = cost;
+                        choice = g;
+                    }
+                }
+                nextCosts[level] = best;
+                choices[z][level] = (byte) choice;
+            }
+            final var swap = costs;
+            costs = nextCosts;
+            nextCosts = swap;
+        }
+        var level = 0;
+        for (var i = 1; i < levelCount; ++i) {
+            if (costs[i] < costs[level]) {
+                level = i;
+            }
+        }
+        if (Double.MAX_VALUE == costs[level]) {
+            throw new OcException("column %d does not fit in %d levels", x, levelCount);
+        }
+        for (var z = h - 1; 0 <= z; --z) {
+            final var g = choices[z][level];
+            indices[z][x] = candidates[g][z][x];
+            levels[z + 1][x] = level;
+            level -= gradients[g];
+        }
+        levels[0][x] = level;
+    }
+}
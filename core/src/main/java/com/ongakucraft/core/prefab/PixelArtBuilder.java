@@ -2,22 +2,24 @@ package com.ongakucraft.core.prefab;
 
 import com.ongakucraft.core.block.Block;
 import com.ongakucraft.core.block.BlockDataset;
-import com.ongakucraft.core.block.BlockId;
 import com.ongakucraft.core.block.Direction;
 import com.ongakucraft.core.block.color.BlockLabColor;
-import com.ongakucraft.core.color.LabColor;
+import com.ongakucraft.core.color.ColorLookupTable;
 import com.ongakucraft.core.color.RgbColor;
 import com.ongakucraft.core.structure.Position;
 import com.ongakucraft.core.structure.Structure;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 
 public final class PixelArtBuilder {
     public static Block[][] frontWallBlockGrid(RgbColor[][] image, List<BlockLabColor> blockLabColorList, BlockDataset blockDataset) {
-        return toBlockGrid(image, blockLabColorList, Direction.N, blockDataset);
+        return frontWallBlockGrid(image, blockLabColorList, blockDataset, null);
+    }
+
+    // ditherer may be null for plain nearest color matching
+    public static Block[][] frontWallBlockGrid(RgbColor[][] image, List<BlockLabColor> blockLabColorList, BlockDataset blockDataset,
+                                               Ditherer ditherer) {
+        return toBlockGrid(image, blockLabColorList, Direction.N, blockDataset, ditherer);
     }
 
     public static Structure frontWall(Block[][] blockGrid) {
@@ -37,7 +39,12 @@ public final class PixelArtBuilder {
     }
 
     public static Block[][] sideWallBlockGrid(RgbColor[][] image, List<BlockLabColor> blockLabColorList, BlockDataset blockDataset) {
-        return toBlockGrid(image, blockLabColorList, Direction.E, blockDataset);
+        return sideWallBlockGrid(image, blockLabColorList, blockDataset, null);
+    }
+
+    public static Block[][] sideWallBlockGrid(RgbColor[][] image, List<BlockLabColor> blockLabColorList, BlockDataset blockDataset,
+                                              Ditherer ditherer) {
+        return toBlockGrid(image, blockLabColorList, Direction.E, blockDataset, ditherer);
     }
 
     public static Structure sideWall(Block[][] blockGrid) {
@@ -57,52 +64,13 @@ public final class PixelArtBuilder {
     }
 
     private static Block[][] toBlockGrid(RgbColor[][] image, List<BlockLabColor> blockLabColorList,
-                                         Direction facing, BlockDataset blockDataset) {
-        final var colorToBlockId = findColorToBlockIdMapByLabColor(image, blockLabColorList, facing);
-        final var h = image.length;
-        final var w = image[0].length;
-        final var blockGrid = new Block[h][];
-        for (var y = 0; y < h; ++y) {
-            blockGrid[y] = new Block[w];
-            for (var x = 0; x < w; ++x) {
-                final var rgbColor = image[y][x];
-                if (null != rgbColor && colorToBlockId.containsKey(rgbColor)) {
-                    final var blockId = colorToBlockId.get(rgbColor);
-                    blockGrid[y][x] = blockDataset.getBlock(blockId).withFacing(facing);
-                }
-            }
-        }
-        return blockGrid;
-    }
-
-    private static Map<RgbColor, BlockId> findColorToBlockIdMapByLabColor(RgbColor[][] image, List<BlockLabColor> blockLabColorList,
-                                                                         Direction facing) {
-        final Map<RgbColor, BlockId> colorToBlockId = new HashMap<>();
-        for (final var row : image) {
-            for (final var rgbColor : row) {
-                if (null == rgbColor || colorToBlockId.containsKey(rgbColor)) {
-                    continue;
-                }
-                final var blockIdOptional = findBlockIdByLabColor(rgbColor, facing, blockLabColorList);
-                blockIdOptional.ifPresent(blockId -> colorToBlockId.put(rgbColor, blockId));
-            }
-        }
-        return colorToBlockId;
-    }
-
-    private static Optional<BlockId> findBlockIdByLabColor(RgbColor rgbColor, Direction facing, List<BlockLabColor> blockLabColorList) {
-        final var targetColor = LabColor.of(rgbColor);
-        var minDeviation = Double.MAX_VALUE;
-        BlockId minBlockId = null;
-        for (final var blockLabColor : blockLabColorList) {
-            final var blockColor = blockLabColor.getColors().get(facing);
-            final var deviation = targetColor.distance(blockColor);
-            if (deviation < minDeviation) {
-                minDeviation = deviation;
-                minBlockId = blockLabColor.getId();
-            }
-        }
-        return Optional.ofNullable(minBlockId);
+                                         Direction facing, BlockDataset blockDataset, Ditherer ditherer) {
+        final var palette = blockLabColorList.stream().map(blockLabColor -> blockLabColor.getColors().get(facing)).toList();
+        final var indexGrid = null == ditherer ? ColorMatcher.match(image, ColorLookupTable.of(palette))
+                                               : ditherer.dither(image, palette);
+        return ColorMatcher.resolve(indexGrid, palette.size(),
+                                    index -> blockDataset.getBlock(blockLabColorList.get(index).getId()).withFacing(facing),
+                                    Block[]::new, Block[][]::new);
     }
 
     private PixelArtBuilder() {}
@@ -0,0 +1,115 @@
+package com.ongakucraft.core.prefab;
+
+import com.ongakucraft.core.OcException;
+import com.ongakucraft.core.block.BlockDataset;
+import com.ongakucraft.core.block.color.BlockMapColor;
+import com.ongakucraft.core.color.RgbColor;
+import com.ongakucraft.core.structure.Structure;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.ongakucraft.core.prefab.MapArtBuilder.BLOCK_LENGTH_PER_MAP;
+
+// builds and exports the maps of an image of any size on a fixed number of threads. tiles share the process-wide
+// color lookup tables, so a color matched in one tile is a single table read in every other tile
+@Slf4j
+public final class TiledMapArtBuilder {
+    public interface TileExporter {
+        void export(int row, int col, Structure structure) throws Exception;
+    }
+
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    @ToString
+    public static final class TileReport {
+        private final int row;
+        private final int col;
+        private final long buildMillis;
+        private final long exportMillis;
+    }
+
+    public static List<TileReport> build(RgbColor[][] image, RgbColor background, List<BlockMapColor> blockMapColorList,
+                                         BlockDataset blockDataset, TileExporter exporter) {
+        return build(image, background, blockMapColorList, blockDataset, MapArtBuilder.MAX_WORLD_HEIGHT,
+                     Runtime.getRuntime().availableProcessors(), exporter);
+    }
+
+    // background fills transparent pixels and the part of the last maps the image does not cover.
+    // reports come back row by row, a failing tile cancels the rest
+    public static List<TileReport> build(@NonNull RgbColor[][] image, @NonNull RgbColor background,
+                                         @NonNull List<BlockMapColor> blockMapColorList, @NonNull BlockDataset blockDataset,
+                                         int maxHeight, int threadCount, @NonNull TileExporter exporter) {
+        if (threadCount < 1) {
+            throw new OcException("thread count should be positive : %d", threadCount);
+        }
+        final var h = image.length;
+        final var w = 0 == h ? 0 : image[0].length;
+        final var rows = (h + BLOCK_LENGTH_PER_MAP - 1) / BLOCK_LENGTH_PER_MAP;
+        final var cols = (w + BLOCK_LENGTH_PER_MAP - 1) / BLOCK_LENGTH_PER_MAP;
+        final var executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<TileReport>> futureList = new ArrayList<>();
+            for (var row = 0; row < rows; ++row) {
+                for (var col = 0; col < cols; ++col) {
+                    final var tileRow = row;
+                    final var tileCol = col;
+                    final Callable<TileReport> task = () -> {
+                        final var start = System.nanoTime();
+                        final var tile = tile(image, background, tileRow, tileCol);
+                        final var structure = MapArtBuilder.buildMap(tile, blockMapColorList, blockDataset, maxHeight);
+                        final var built = System.nanoTime();
+                        exporter.export(tileRow, tileCol, structure);
+                        final var report = new TileReport(tileRow, tileCol, (built - start) / 1_000_000,
+                                                          (System.nanoTime() - built) / 1_000_000);
+                        log.info("map {} {} : build {} ms, export {} ms", tileRow, tileCol,
+                                 report.getBuildMillis(), report.getExportMillis());
+                        return report;
+                    };
+                    futureList.add(executor.submit(task));
+                }
+            }
+            final List<TileReport> reportList = new ArrayList<>();
+            for (var i = 0; i < futureList.size(); ++i) {
+                try {
+                    reportList.add(futureList.get(i).get());
+                } catch (ExecutionException e) {
+                    final var exception = new OcException("map %d %d : %s", i / cols, i % cols, e.getCause().getMessage());
+                    exception.initCause(e.getCause());
+                    throw exception;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new OcException("interrupted at map %d %d", i / cols, i % cols);
+                }
+            }
+            return reportList;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static RgbColor[][] tile(RgbColor[][] image, RgbColor background, int row, int col) {
+        final var tile = new RgbColor[BLOCK_LENGTH_PER_MAP][BLOCK_LENGTH_PER_MAP];
+        for (var z = 0; z < BLOCK_LENGTH_PER_MAP; ++z) {
+            final var y = row * BLOCK_LENGTH_PER_MAP + z;
+            for (var x = 0; x < BLOCK_LENGTH_PER_MAP; ++x) {
+                final var imageX = col * BLOCK_LENGTH_PER_MAP + x;
+                final var rgbColor = y < image.length && imageX < image[y].length ? image[y][imageX] : null;
+                tile[z][x] = null == rgbColor ? background : rgbColor;
+            }
+        }
+        return tile;
+    }
+
+    private TiledMapArtBuilder() {}
+}
@@ -0,0 +1,171 @@
+package com.ongakucraft.core.structure;
+
+import java.util.TreeMap;
+
+// number of blocks per coordinate along one axis, min and max always bound the occupied coordinates
+// and are tightened lazily once a boundary coordinate empties. counts are kept in internal coordinates,
+// coordinate = sign * internal + shift, so translating and mirroring the axis are constant time
+final class AxisOccupancy {
+    private static final int MIN_LENGTH = 16;
+    // wider spans move the counts into a sorted map, so far apart blocks do not cost one int per coordinate between them
+    private static final int MAX_DENSE_LENGTH = 1 << 16;
+
+    private int[] counts;
+    private int offset;
+    private TreeMap<Integer, Integer> sparseCounts;
+    private int total;
+    private int min;
+    private int max;
+    private boolean dirty;
+    private int sign = 1;
+    private int shift;
+
+    AxisOccupancy() {
+        counts = new int[0];
+    }
+
+    private AxisOccupancy(AxisOccupancy other) {
+        counts = other.counts.clone();
+        offset = other.offset;
+        sparseCounts = null == other.sparseCounts ? null : new TreeMap<>(other.sparseCounts);
+        total = other.total;
+        min = other.min;
+        max = other.max;
+        dirty = other.dirty;
+        sign = other.sign;
+        shift = other.shift;
+    }
+
+    AxisOccupancy copy() {
+        return new AxisOccupancy(this);
+    }
+
+    void add(int value) {
+        add(value, 1);
+    }
+
+    void add(int value, int count) {
+        final var internal = internal(value);
+        if (null == sparseCounts) {
+            ensure(internal);
+        }
+        if (null == sparseCounts) {
+            counts[internal - offset] += count;
+        } else {
+            sparseCounts.merge(internal, count, Integer::sum);
+        }
+        if (0 == total) {
+            min = internal;
+            max = internal;
+            dirty = false;
+        } else {
+            min = Math.min(min, internal);
+            max = Math.max(max, internal);
+        }
+        total += count;
+    }
+
+    // count blocks on every coordinate in [start, stop)
+    void add(int start, int stop, int count) {
+        for (var value = start; value < stop; ++value) {
+            add(value, count);
+        }
+    }
+
+    void remove(int value) {
+        final var internal = internal(value);
+        --total;
+        final int remaining;
+        if (null == sparseCounts) {
+            remaining = --counts[internal - offset];
+        } else {
+            remaining = sparseCounts.merge(internal, -1, Integer::sum);
+            if (0 == remaining) {
+                sparseCounts.remove(internal);
+            }
+        }
+        if (0 == remaining && (internal == min || internal == max)) {
+            dirty = true;
+        }
+    }
+
+    void translate(int delta) {
+        shift += delta;
+    }
+
+    // coordinate -> -coordinate, the mapping a quarter or half turn applies to an axis
+    void negate() {
+        sign = -sign;
+        shift = -shift;
+    }
+
+    boolean isEmpty() {
+        return 0 == total;
+    }
+
+    int min() {
+        refresh();
+        return 0 < sign ? min + shift : shift - max;
+    }
+
+    int max() {
+        refresh();
+        return 0 < sign ? max + shift : shift - min;
+    }
+
+    private int internal(int value) {
+        return 0 < sign ? value - shift : shift - value;
+    }
+
+    private void refresh() {
+        if (!dirty) {
+            return;
+        }
+        if (null == sparseCounts) {
+            var lo = min - offset;
+            while (0 == counts[lo]) {
+                ++lo;
+            }
+            var hi = max - offset;
+            while (0 == counts[hi]) {
+                --hi;
+            }
+            min = lo + offset;
+            max = hi + offset;
+        } else {
+            min = sparseCounts.firstKey();
+            max = sparseCounts.lastKey();
+        }
+        dirty = false;
+    }
+
+    private void ensure(int value) {
+        if (0 == counts.length) {
+            counts = new int[MIN_LENGTH];
+            offset = value - MIN_LENGTH / 2;
+            return;
+        }
+        final var index = value - offset;
+        if (0 <= index && index < counts.length) {
+            return;
+        }
+        final var lo = Math.min(offset, value);
+        final var hi = Math.max(offset + counts.length - 1, value);
+        if (MAX_DENSE_LENGTH < (long) hi - lo + 1) {
+            sparseCounts = new TreeMap<>();
+            for (var i = 0; i < counts.length; ++i) {
+                if (0 != counts[i]) {
+                    sparseCounts.put(i + offset, counts[i]);
+                }
+            }
+            counts = new int[0];
+            return;
+        }
+        final var length = (int) Math.min(MAX_DENSE_LENGTH, Math.max(counts.length * 2L, hi - lo + 1));
+        final var newOffset = value < offset ? hi - length + 1 : lo;
+        final var newCounts = new int[length];
+        System.arraycopy(counts, 0, newCounts, offset - newOffset, counts.length);
+        counts = newCounts;
+        offset = newOffset;
+    }
+}
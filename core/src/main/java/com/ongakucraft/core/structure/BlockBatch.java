@@ -0,0 +1,39 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+
+import java.util.Arrays;
+
+// positions and blocks for a bulk write, absent[i] is set when the i-th write filled an empty cell
+final class BlockBatch {
+    int[] xs;
+    int[] ys;
+    int[] zs;
+    Block[] blocks;
+    boolean[] absent;
+    int size;
+
+    BlockBatch(int capacity) {
+        xs = new int[capacity];
+        ys = new int[capacity];
+        zs = new int[capacity];
+        blocks = new Block[capacity];
+        absent = new boolean[capacity];
+    }
+
+    void add(int x, int y, int z, Block block) {
+        if (xs.length == size) {
+            final var capacity = Math.max(16, size * 2);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            zs = Arrays.copyOf(zs, capacity);
+            blocks = Arrays.copyOf(blocks, capacity);
+            absent = Arrays.copyOf(absent, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        zs[size] = z;
+        blocks[size] = block;
+        ++size;
+    }
+}
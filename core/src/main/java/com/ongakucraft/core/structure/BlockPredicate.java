@@ -0,0 +1,8 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+
+@FunctionalInterface
+public interface BlockPredicate {
+    boolean test(int x, int y, int z, Block block);
+}
@@ -0,0 +1,104 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+import com.ongakucraft.core.block.BlockId;
+import com.ongakucraft.core.block.define.BlockDefine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public interface BlockStorage {
+    // what put returns when the storage refuses the write and leaves the cell as it was,
+    // only storages whose mayRejectWrites is true ever return it
+    Block REJECTED = Block.of(BlockDefine.of(BlockId.of("ongakucraft", "rejected"), List.of(), false, 0, false, false, false));
+
+    Block put(int x, int y, int z, Block block);
+
+    Block get(int x, int y, int z);
+
+    Block remove(int x, int y, int z);
+
+    int size();
+
+    void forEach(BlockConsumer consumer);
+
+    BlockStorage copy();
+
+    BlockStorage empty();
+
+    // heap bytes held by the storage itself, blocks are shared and accounted for separately
+    long estimateBytes();
+
+    default long estimateOffHeapBytes() {
+        return 0;
+    }
+
+    default void forEach(Range3 range3, BlockConsumer consumer) {
+        if (range3.isEmpty()) {
+            return;
+        }
+        forEach((x, y, z, block) -> {
+            if (range3.contains(x, y, z)) {
+                consumer.accept(x, y, z, block);
+            }
+        });
+    }
+
+    // stops at the first block inside the range the predicate accepts, storages without a cheaper walk visit them all
+    default boolean anyMatch(Range3 range3, BlockPredicate predicate) {
+        final var matched = new boolean[1];
+        forEach(range3, (x, y, z, block) -> {
+            if (!matched[0] && predicate.test(x, y, z, block)) {
+                matched[0] = true;
+            }
+        });
+        return matched[0];
+    }
+
+    default void fill(Range3 range3, Block block) {
+        for (var x = range3.getX().getStart(); x < range3.getX().getStop(); ++x) {
+            for (var y = range3.getY().getStart(); y < range3.getY().getStop(); ++y) {
+                for (var z = range3.getZ().getStart(); z < range3.getZ().getStop(); ++z) {
+                    put(x, y, z, block);
+                }
+            }
+        }
+    }
+
+    default void replace(Range3 range3, Block block) {
+        final List<Position> positionList = new ArrayList<>();
+        forEach(range3, (x, y, z, oldBlock) -> positionList.add(Position.of(x, y, z)));
+        for (final var position : positionList) {
+            put(position.getX(), position.getY(), position.getZ(), block);
+        }
+    }
+
+    default void putAll(BlockBatch batch, boolean onlyAbsent) {
+        for (var i = 0; i < batch.size; ++i) {
+            if (onlyAbsent && has(batch.xs[i], batch.ys[i], batch.zs[i])) {
+                batch.absent[i] = false;
+            } else {
+                batch.absent[i] = null == put(batch.xs[i], batch.ys[i], batch.zs[i], batch.blocks[i]);
+            }
+        }
+    }
+
+    default MaterialBill countBlocks() {
+        final var materialBill = new MaterialBill();
+        forEach((x, y, z, block) -> materialBill.add(block, 1));
+        return materialBill;
+    }
+
+    // bulk paths that count a whole box up front go cell by cell for storages that may refuse a write
+    default boolean mayRejectWrites() {
+        return false;
+    }
+
+    default boolean has(int x, int y, int z) {
+        return null != get(x, y, z);
+    }
+
+    default boolean isEmpty() {
+        return 0 == size();
+    }
+}
@@ -0,0 +1,357 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.OcException;
+import com.ongakucraft.core.block.Block;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// sections are spread over lock stripes, writers on different threads only contend when their sections share a stripe.
+// overlapping writes merge by writer rank: a cell keeps the last write of the lowest rank that touched it,
+// so the result does not depend on thread scheduling as long as every thread writes with its own rank
+public final class ConcurrentBlockStorage implements BlockStorage, SectionedStorage {
+    public static final int MAX_RANK = Short.MAX_VALUE - 1;
+    private static final int DEFAULT_STRIPE_COUNT = 64;
+    private static final long SHARD_BYTES = Footprint.align(Footprint.OBJECT_HEADER + Footprint.REFERENCE * 2L + Integer.BYTES);
+
+    private static final class Shard {
+        private final Section section;
+        // rank + 1 of the writer that owns the cell, 0 for cells written without a rank. allocated on the first ranked write
+        private short[] ranks;
+        private int rankedCount;
+
+        private Shard() {
+            this(new Section(), null, 0);
+        }
+
+        private Shard(Section section, short[] ranks, int rankedCount) {
+            this.section = section;
+            this.ranks = ranks;
+            this.rankedCount = rankedCount;
+        }
+
+        private Shard copy() {
+            return new Shard(section.copy(), null == ranks ? null : ranks.clone(), rankedCount);
+        }
+
+        private short rank(int index) {
+            return null == ranks ? 0 : ranks[index];
+        }
+
+        private void setRank(int index, short rank) {
+            final var oldRank = rank(index);
+            if (oldRank == rank) {
+                return;
+            }
+            if (null == ranks) {
+                ranks = new short[Section.VOLUME];
+            }
+            ranks[index] = rank;
+            if (0 == oldRank) {
+                ++rankedCount;
+            } else if (0 == rank && 0 == --rankedCount) {
+                ranks = null;
+            }
+        }
+
+        // a ranked cell has to outlive its block, otherwise a higher rank could fill it later depending on timing
+        private boolean isDisposable() {
+            return section.isEmpty() && 0 == rankedCount;
+        }
+    }
+
+    private static final class Stripe {
+        private final LongObjectMap<Shard> shards = new LongObjectMap<>();
+    }
+
+    private final class Writer implements BlockStorage {
+        private final short rank;
+
+        private Writer(int rank) {
+            this.rank = (short) (rank + 1);
+        }
+
+        @Override
+        public Block put(int x, int y, int z, Block block) {
+            return ConcurrentBlockStorage.this.put(x, y, z, block, rank);
+        }
+
+        @Override
+        public Block get(int x, int y, int z) {
+            return ConcurrentBlockStorage.this.get(x, y, z);
+        }
+
+        @Override
+        public Block remove(int x, int y, int z) {
+            return ConcurrentBlockStorage.this.remove(x, y, z, rank);
+        }
+
+        @Override
+        public boolean mayRejectWrites() {
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentBlockStorage.this.size();
+        }
+
+        @Override
+        public void forEach(BlockConsumer consumer) {
+            ConcurrentBlockStorage.this.forEach(consumer);
+        }
+
+        @Override
+        public long estimateBytes() {
+            return ConcurrentBlockStorage.this.estimateBytes();
+        }
+
+        @Override
+        public BlockStorage copy() {
+            return ConcurrentBlockStorage.this.copy();
+        }
+
+        @Override
+        public BlockStorage empty() {
+            return ConcurrentBlockStorage.this.empty();
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public ConcurrentBlockStorage() {
+        this(DEFAULT_STRIPE_COUNT);
+    }
+
+    ConcurrentBlockStorage(int stripeCount) {
+        stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1];
+        for (var i = 0; i < stripes.length; ++i) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // a view for one writer thread, wrap it in its own Structure and Cursor. reads, size and the first bounds query
+    // of such a structure see every writer, later bounds only follow its own writes, so read the merged scene
+    // through new Structure(this) once the writers are done
+    public BlockStorage writer(int rank) {
+        if (rank < 0 || MAX_RANK < rank) {
+            throw new OcException("writer rank out of range : %d", rank);
+        }
+        return new Writer(rank);
+    }
+
+    // once every writer is done, forgets the writer ranks and drops the shards they kept alive
+    public void releaseRanks() {
+        for (final var stripe : stripes) {
+            synchronized (stripe) {
+                for (final var key : stripe.shards.keys()) {
+                    final var shard = stripe.shards.get(key);
+                    shard.ranks = null;
+                    shard.rankedCount = 0;
+                    if (shard.isDisposable()) {
+                        stripe.shards.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    int shardCount() {
+        var count = 0;
+        for (final var stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.shards.size();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Block put(int x, int y, int z, Block block) {
+        return put(x, y, z, block, (short) 0);
+    }
+
+    @Override
+    public Block get(int x, int y, int z) {
+        final var key = sectionKey(x, y, z);
+        final var stripe = stripe(key);
+        synchronized (stripe) {
+            final var shard = stripe.shards.get(key);
+            return null == shard ? null : shard.section.get(Section.index(x, y, z));
+        }
+    }
+
+    @Override
+    public Block remove(int x, int y, int z) {
+        return remove(x, y, z, (short) 0);
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    // every section is copied under its stripe lock and visited after the lock is released,
+    // so consumers may write into this storage, sections written meanwhile may or may not be seen
+    @Override
+    public void forEach(BlockConsumer consumer) {
+        final var cells = new int[Section.VOLUME];
+        for (final var key : sectionKeys()) {
+            final var palette = readSection(key, cells);
+            if (null == palette) {
+                continue;
+            }
+            final var xOffset = SectionBlockStorage.sectionX(key) << Section.BITS;
+            final var yOffset = SectionBlockStorage.sectionY(key) << Section.BITS;
+            final var zOffset = SectionBlockStorage.sectionZ(key) << Section.BITS;
+            for (var index = 0; index < Section.VOLUME; ++index) {
+                if (0 != cells[index]) {
+                    consumer.accept(xOffset + Section.x(index), yOffset + Section.y(index), zOffset + Section.z(index),
+                                    palette[cells[index]]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean anyMatch(Range3 range3, BlockPredicate predicate) {
+        if (range3.isEmpty()) {
+            return false;
+        }
+        final var cells = new int[Section.VOLUME];
+        for (final var key : sectionKeys()) {
+            final var box = SectionBlockStorage.clip(range3, key);
+            if (box[1] <= box[0] || box[3] <= box[2] || box[5] <= box[4]) {
+                continue;
+            }
+            final var palette = readSection(key, cells);
+            if (null == palette) {
+                continue;
+            }
+            final var xOffset = SectionBlockStorage.sectionX(key) << Section.BITS;
+            final var yOffset = SectionBlockStorage.sectionY(key) << Section.BITS;
+            final var zOffset = SectionBlockStorage.sectionZ(key) << Section.BITS;
+            for (var y = box[2]; y < box[3]; ++y) {
+                for (var z = box[4]; z < box[5]; ++z) {
+                    for (var x = box[0]; x < box[1]; ++x) {
+                        final var cell = cells[Section.index(x, y, z)];
+                        if (0 != cell && predicate.test(xOffset + x, yOffset + y, zOffset + z, palette[cell])) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long estimateBytes() {
+        final var bytes = new long[] { Footprint.arrayBytes(stripes.length, Footprint.REFERENCE) };
+        for (final var stripe : stripes) {
+            synchronized (stripe) {
+                bytes[0] += stripe.shards.estimateBytes();
+                stripe.shards.forEach((key, shard) -> bytes[0] += SHARD_BYTES + shard.section.estimateBytes() +
+                                                                (null == shard.ranks ? 0 : Footprint.arrayBytes(Section.VOLUME, Short.BYTES)));
+            }
+        }
+        return bytes[0];
+    }
+
+    @Override
+    public long[] sectionKeys() {
+        final var keySet = new LongObjectMap<Boolean>();
+        for (final var stripe : stripes) {
+            synchronized (stripe) {
+                stripe.shards.forEach((key, shard) -> keySet.put(key, Boolean.TRUE));
+            }
+        }
+        return keySet.keys();
+    }
+
+    // the palette is copied, writers may recycle its entries once the stripe is released
+    @Override
+    public Block[] readSection(long key, int[] cells) {
+        final var stripe = stripe(key);
+        synchronized (stripe) {
+            final var shard = stripe.shards.get(key);
+            return null == shard ? null : shard.section.read(cells).clone();
+        }
+    }
+
+    @Override
+    public ConcurrentBlockStorage copy() {
+        final var storage = new ConcurrentBlockStorage(stripes.length);
+        for (var i = 0; i < stripes.length; ++i) {
+            final var target = storage.stripes[i];
+            synchronized (stripes[i]) {
+                stripes[i].shards.forEach((key, shard) -> {
+                    target.shards.put(key, shard.copy());
+                    storage.size.addAndGet(shard.section.size());
+                });
+            }
+        }
+        return storage;
+    }
+
+    @Override
+    public ConcurrentBlockStorage empty() {
+        return new ConcurrentBlockStorage(stripes.length);
+    }
+
+    private Block put(int x, int y, int z, Block block, short rank) {
+        final var key = sectionKey(x, y, z);
+        final var stripe = stripe(key);
+        synchronized (stripe) {
+            final var shard = stripe.shards.computeIfAbsent(key, k -> new Shard());
+            final var index = Section.index(x, y, z);
+            if (!canWrite(shard, index, rank)) {
+                return REJECTED;
+            }
+            shard.setRank(index, rank);
+            final var oldBlock = shard.section.set(index, block);
+            if (null == oldBlock) {
+                size.incrementAndGet();
+            }
+            return oldBlock;
+        }
+    }
+
+    private Block remove(int x, int y, int z, short rank) {
+        final var key = sectionKey(x, y, z);
+        final var stripe = stripe(key);
+        synchronized (stripe) {
+            // ranked removals of empty cells still have to leave their rank behind,
+            // otherwise a higher rank could fill the cell later depending on timing
+            final var shard = 0 == rank ? stripe.shards.get(key) : stripe.shards.computeIfAbsent(key, k -> new Shard());
+            final var index = Section.index(x, y, z);
+            if (null == shard || !canWrite(shard, index, rank)) {
+                return null;
+            }
+            shard.setRank(index, rank);
+            final var oldBlock = shard.section.set(index, null);
+            if (null != oldBlock) {
+                size.decrementAndGet();
+            }
+            if (shard.isDisposable()) {
+                stripe.shards.remove(key);
+            }
+            return oldBlock;
+        }
+    }
+
+    private static boolean canWrite(Shard shard, int index, short rank) {
+        final var owner = shard.rank(index);
+        return 0 == rank || 0 == owner || rank <= owner;
+    }
+
+    private Stripe stripe(long key) {
+        var h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return stripes[(int) h & (stripes.length - 1)];
+    }
+
+    private static long sectionKey(int x, int y, int z) {
+        return SectionBlockStorage.sectionKey(x >> Section.BITS, y >> Section.BITS, z >> Section.BITS);
+    }
+}
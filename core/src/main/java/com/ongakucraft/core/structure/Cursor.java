@@ -8,13 +8,14 @@ import lombok.*;
 
 import java.util.List;
 
-@AllArgsConstructor
 @Getter
 @Setter
 public final class Cursor implements Cloneable {
     @NonNull private BlockDataset blockDataset;
     @NonNull private Structure structure;
-    @NonNull private Position position;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) private int x;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) private int y;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) private int z;
     @NonNull private Direction facing;
     @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) private Structure tmpStructure;
 
@@ -22,6 +23,32 @@ public final class Cursor implements Cloneable {
         this(blockDataset, structure, Position.ZERO, Direction.S, null);
     }
 
+    public Cursor(@NonNull BlockDataset blockDataset, @NonNull Structure structure, @NonNull Position position,
+                  @NonNull Direction facing, Structure tmpStructure) {
+        this(blockDataset, structure, position.getX(), position.getY(), position.getZ(), facing, tmpStructure);
+    }
+
+    private Cursor(BlockDataset blockDataset, Structure structure, int x, int y, int z,
+                   Direction facing, Structure tmpStructure) {
+        this.blockDataset = blockDataset;
+        this.structure = structure;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.facing = facing;
+        this.tmpStructure = tmpStructure;
+    }
+
+    public Position getPosition() {
+        return Position.of(x, y, z);
+    }
+
+    public void setPosition(@NonNull Position position) {
+        x = position.getX();
+        y = position.getY();
+        z = position.getZ();
+    }
+
     public void setPreventModify(boolean flag) {
         if (getPreventModify()) {
             structure = tmpStructure;
@@ -29,7 +56,7 @@ public final class Cursor implements Cloneable {
         }
         if (flag) {
             tmpStructure = structure;
-            structure = structure.clone();
+            structure = structure.overlay();
         }
     }
 
@@ -39,7 +66,7 @@ public final class Cursor implements Cloneable {
 
     @Override
     public Cursor clone() {
-        return new Cursor(blockDataset, structure, position, facing, tmpStructure);
+        return new Cursor(blockDataset, structure, x, y, z, facing, tmpStructure);
     }
 
     public Cursor step() {
@@ -47,12 +74,14 @@ public final class Cursor implements Cloneable {
     }
 
     public Cursor step(int times) {
-        position = position.step(facing, times);
+        x += facing.getX() * times;
+        y += facing.getY() * times;
+        z += facing.getZ() * times;
         return this;
     }
 
     public Cursor jump(int y) {
-        position = position.jump(y);
+        this.y += y;
         return this;
     }
 
@@ -65,8 +94,24 @@ public final class Cursor implements Cloneable {
     }
 
     public Cursor translate(int x, int y, int z) {
-        final var relativePosition = Position.of(x, y, z).rotate(rotateTimes());
-        position = position.translate(relativePosition.getX(), relativePosition.getY(), relativePosition.getZ());
+        final var times = rotateTimes();
+        final var dx = switch (times) {
+            case 0 -> x;
+            case 1 -> z;
+            case 2 -> -x;
+            case 3 -> -z;
+            default -> throw new OcException("");
+        };
+        final var dz = switch (times) {
+            case 0 -> z;
+            case 1 -> -x;
+            case 2 -> -z;
+            case 3 -> x;
+            default -> throw new OcException("");
+        };
+        this.x += dx;
+        this.y += y;
+        this.z += dz;
         return this;
     }
 
@@ -101,42 +146,66 @@ public final class Cursor implements Cloneable {
 
     public Cursor place(@NonNull String path) {
         final var block = getBlock(path);
-        structure.put(position, block);
+        structure.put(x, y, z, block);
         return this;
     }
 
     public Cursor placeRepeater(int delay) {
         final var block = getBlock("repeater").putProperty("delay", delay);
-        structure.put(position, block);
+        structure.put(x, y, z, block);
         return this;
     }
 
-    public Cursor placeRedstoneWire(List<Direction> sides) {
+    public Block getRedstoneWire(@NonNull List<Direction> sides) {
         var block = getBlock("redstone_wire");
         for (var side : sides) {
             block = block.putProperty(side.getText(), "side");
         }
-        structure.put(position, block);
+        return block;
+    }
+
+    public Cursor placeRedstoneWire(List<Direction> sides) {
+        structure.put(x, y, z, getRedstoneWire(sides));
         return this;
     }
 
+    // same as length times place(path).step() with the block resolved once. a run is a 1x1xlength box,
+    // far below the bulk threshold of Structure.fill, so its cells are still written one by one
+    public Cursor placeRun(@NonNull String path, int length) {
+        return placeRun(getBlock(path), length);
+    }
+
+    // block is placed as is, like the blocks returned by getBlock
+    public Cursor placeRun(@NonNull Block block, int length) {
+        if (length <= 0) {
+            return this;
+        }
+        final var endX = x + facing.getX() * (length - 1);
+        final var endY = y + facing.getY() * (length - 1);
+        final var endZ = z + facing.getZ() * (length - 1);
+        structure.fill(Range3.of(Range.of(Math.min(x, endX), Math.max(x, endX) + 1),
+                                 Range.of(Math.min(y, endY), Math.max(y, endY) + 1),
+                                 Range.of(Math.min(z, endZ), Math.max(z, endZ) + 1)), block);
+        return step(length);
+    }
+
     public Cursor placeNoteBlock(int note) {
         final var block = getBlock("note_block").putProperty("note", note);
-        structure.put(position, block);
+        structure.put(x, y, z, block);
         return this;
     }
 
     public Cursor put(@NonNull Block t) {
-        structure.put(position, t.rotate(rotateTimes()));
+        structure.put(x, y, z, t.rotate(rotateTimes()));
         return this;
     }
 
     public Block get() {
-        return structure.get(position);
+        return structure.get(x, y, z);
     }
 
     public Block remove() {
-        return structure.remove(position);
+        return structure.remove(x, y, z);
     }
 
     public Structure cut(@NonNull Range3 range3) {
@@ -152,7 +221,14 @@ public final class Cursor implements Cloneable {
     }
 
     public void paste(@NonNull Structure src) {
-        structure.paste(transform(src));
+        structure.paste(src, rotateTimes(), x, y, z);
+    }
+
+    // pastes a prebuilt pattern at an offset given in the cursor's frame, the cursor itself does not move
+    public Cursor stamp(@NonNull Structure pattern, int x, int y, int z) {
+        final var origin = clone().translate(x, y, z);
+        structure.paste(pattern, rotateTimes(), origin.x, origin.y, origin.z);
+        return this;
     }
 
     private int rotateTimes() {
@@ -175,13 +251,6 @@ public final class Cursor implements Cloneable {
     }
 
     private Range3 transform(Range3 range3) {
-        return range3.rotate(rotateTimes()).translate(position.getX(), position.getY(), position.getZ());
-    }
-
-    private Structure transform(Structure structure) {
-        final var newStructure = structure.clone();
-        newStructure.rotate(rotateTimes());
-        newStructure.translate(position.getX(), position.getY(), position.getZ());
-        return newStructure;
+        return range3.rotate(rotateTimes()).translate(x, y, z);
     }
 }
@@ -0,0 +1,111 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+import com.ongakucraft.core.block.BlockDataset;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// estimated bytes for a 64-bit vm with compressed references, good enough to compare storages and jobs
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+@ToString
+public final class Footprint {
+    static final int OBJECT_HEADER = 12;
+    static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+    private static final int BLOCK_BYTES = (int) align(OBJECT_HEADER + REFERENCE * 6 + Integer.BYTES * 2);
+    private static final int HASH_MAP_BYTES = 48;
+    private static final int HASH_MAP_ENTRY_BYTES = 32;
+    private static final int UNMODIFIABLE_MAP_BYTES = 16;
+    private static final int BOXED_BYTES = 16;
+
+    public static Footprint of(@NonNull Structure structure) {
+        final var storage = structure.storage;
+        final var states = storage.countBlocks().byState().keySet();
+        return of(storage.estimateBytes(), storage.estimateOffHeapBytes(), states);
+    }
+
+    public static Footprint of(@NonNull BlockDataset blockDataset) {
+        final var registry = blockDataset.getBlockStateRegistry();
+        final Set<Block> states = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (var i = 0; i < registry.size(); ++i) {
+            states.add(registry.getState(i));
+        }
+        states.addAll(blockDataset.getBlockList());
+        final var indexBytes = hashMapBytes(blockDataset.getBlockPropertyDefineMap().size()) +
+                               hashMapBytes(blockDataset.getBlockDefineMap().size()) +
+                               hashMapBytes(blockDataset.getBlockMap().size()) +
+                               hashMapBytes(blockDataset.getRgbColorMap().size()) +
+                               hashMapBytes(blockDataset.getLabColorMap().size()) +
+                               hashMapBytes(states.size()) * 2;
+        return of(indexBytes, 0, states);
+    }
+
+    private static Footprint of(long indexBytes, long offHeapBytes, Collection<Block> states) {
+        final Set<Map<?, ?>> propertyMaps = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<Map<?, ?>> entityDataMaps = Collections.newSetFromMap(new IdentityHashMap<>());
+        var propertyBytes = 0L;
+        var entityDataBytes = 0L;
+        for (final var block : states) {
+            final var propertyValueMap = block.getPropertyValueMap();
+            if (propertyMaps.add(propertyValueMap)) {
+                propertyBytes += mapBytes(propertyValueMap);
+            }
+            final var entityData = block.getEntityData();
+            if (!entityData.isEmpty() && entityDataMaps.add(entityData)) {
+                entityDataBytes += mapBytes(entityData);
+            }
+        }
+        return new Footprint(indexBytes, offHeapBytes, (long) BLOCK_BYTES * states.size(),
+                             propertyBytes, entityDataBytes, states.size());
+    }
+
+    // cell and position key storage on the heap, lookup tables for a dataset
+    private final long indexBytes;
+    private final long offHeapBytes;
+    private final long blockBytes;
+    private final long propertyBytes;
+    private final long entityDataBytes;
+    private final int distinctStates;
+
+    public long getHeapBytes() {
+        return indexBytes + blockBytes + propertyBytes + entityDataBytes;
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static long arrayBytes(int length, int elementBytes) {
+        return align(ARRAY_HEADER + (long) length * elementBytes);
+    }
+
+    static long hashMapBytes(int size) {
+        if (0 == size) {
+            return HASH_MAP_BYTES;
+        }
+        final var capacity = Integer.highestOneBit(Math.max(1, (int) (size / 0.75f) - 1)) << 1;
+        return HASH_MAP_BYTES + arrayBytes(capacity, REFERENCE) + (long) HASH_MAP_ENTRY_BYTES * size;
+    }
+
+    private static long mapBytes(Map<?, ?> map) {
+        var bytes = UNMODIFIABLE_MAP_BYTES + hashMapBytes(map.size());
+        for (final var value : map.values()) {
+            if (value instanceof String) {
+                bytes += align(OBJECT_HEADER + Integer.BYTES * 2L) + arrayBytes(((String) value).length(), 1);
+            } else if (value instanceof Integer) {
+                bytes += BOXED_BYTES;
+            }
+        }
+        return bytes;
+    }
+}
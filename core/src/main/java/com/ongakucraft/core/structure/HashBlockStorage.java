@@ -0,0 +1,76 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class HashBlockStorage implements BlockStorage {
+    private static final int POSITION_BYTES = (int) Footprint.align(Footprint.OBJECT_HEADER + Integer.BYTES * 4L);
+
+    private final Map<Position, Block> grid;
+
+    public HashBlockStorage() {
+        this(new HashMap<>());
+    }
+
+    private HashBlockStorage(Map<Position, Block> grid) {
+        this.grid = grid;
+    }
+
+    @Override
+    public Block put(int x, int y, int z, Block block) {
+        return grid.put(Position.of(x, y, z), block);
+    }
+
+    @Override
+    public Block get(int x, int y, int z) {
+        return grid.get(Position.of(x, y, z));
+    }
+
+    @Override
+    public Block remove(int x, int y, int z) {
+        return grid.remove(Position.of(x, y, z));
+    }
+
+    @Override
+    public int size() {
+        return grid.size();
+    }
+
+    @Override
+    public void forEach(BlockConsumer consumer) {
+        for (final var entry : grid.entrySet()) {
+            final var position = entry.getKey();
+            consumer.accept(position.getX(), position.getY(), position.getZ(), entry.getValue());
+        }
+    }
+
+    @Override
+    public boolean anyMatch(Range3 range3, BlockPredicate predicate) {
+        for (final var entry : grid.entrySet()) {
+            final var position = entry.getKey();
+            if (range3.contains(position.getX(), position.getY(), position.getZ()) &&
+                predicate.test(position.getX(), position.getY(), position.getZ(), entry.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // positions in the small coordinate cache are shared, the estimate counts every key as its own
+    @Override
+    public long estimateBytes() {
+        return Footprint.hashMapBytes(grid.size()) + (long) POSITION_BYTES * grid.size();
+    }
+
+    @Override
+    public HashBlockStorage copy() {
+        return new HashBlockStorage(new HashMap<>(grid));
+    }
+
+    @Override
+    public HashBlockStorage empty() {
+        return new HashBlockStorage();
+    }
+}
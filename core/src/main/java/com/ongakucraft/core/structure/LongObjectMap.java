@@ -0,0 +1,168 @@
+package com.ongakucraft.core.structure;
+
+import java.util.function.LongFunction;
+
+// open addressing with linear probing, a null value marks an empty slot
+final class LongObjectMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    @FunctionalInterface
+    interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    LongObjectMap(int expectedSize) {
+        final var capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize * 2 - 1)) << 1);
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    private LongObjectMap(LongObjectMap<V> other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    LongObjectMap<V> copy() {
+        return new LongObjectMap<>(this);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return 0 == size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        final var mask = keys.length - 1;
+        for (var i = slot(key, mask); ; i = (i + 1) & mask) {
+            final var value = values[i];
+            if (null == value || keys[i] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    long estimateBytes() {
+        return Footprint.align(Footprint.OBJECT_HEADER + Footprint.REFERENCE * 2L + Integer.BYTES) +
+               Footprint.arrayBytes(keys.length, Long.BYTES) + Footprint.arrayBytes(values.length, Footprint.REFERENCE);
+    }
+
+    boolean containsKey(long key) {
+        return null != get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        final var mask = keys.length - 1;
+        var i = slot(key, mask);
+        for (; null != values[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                final var oldValue = (V) values[i];
+                values[i] = value;
+                return oldValue;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (keys.length <= ++size * 2) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    V computeIfAbsent(long key, LongFunction<V> mapping) {
+        var value = get(key);
+        if (null == value) {
+            value = mapping.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        final var mask = keys.length - 1;
+        var i = slot(key, mask);
+        for (; ; i = (i + 1) & mask) {
+            if (null == values[i]) {
+                return null;
+            }
+            if (keys[i] == key) {
+                break;
+            }
+        }
+        final var oldValue = (V) values[i];
+        // backward shift deletion keeps probe chains intact without tombstones
+        var hole = i;
+        for (var j = (i + 1) & mask; null != values[j]; j = (j + 1) & mask) {
+            final var home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = null;
+        --size;
+        return oldValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(EntryConsumer<V> consumer) {
+        final var currentKeys = keys;
+        final var currentValues = values;
+        for (var i = 0; i < currentValues.length; ++i) {
+            final var value = currentValues[i];
+            if (null != value) {
+                consumer.accept(currentKeys[i], (V) value);
+            }
+        }
+    }
+
+    long[] keys() {
+        final var result = new long[size];
+        var count = 0;
+        for (var i = 0; i < values.length; ++i) {
+            if (null != values[i]) {
+                result[count++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    private void rehash(int capacity) {
+        final var oldKeys = keys;
+        final var oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        final var mask = capacity - 1;
+        for (var i = 0; i < oldValues.length; ++i) {
+            if (null != oldValues[i]) {
+                var j = slot(oldKeys[i], mask);
+                while (null != values[j]) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        var h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+}
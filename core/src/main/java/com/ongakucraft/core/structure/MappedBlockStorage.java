@@ -0,0 +1,351 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.OcException;
+import com.ongakucraft.core.block.Block;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// sections live in a memory-mapped temporary file as 16-bit indices into a palette shared by the whole storage,
+// only the palette and one small record per section stay on the heap
+public final class MappedBlockStorage implements BlockStorage, SectionedStorage, AutoCloseable {
+    private static final int SLOT_BYTES = Section.VOLUME * Short.BYTES;
+    private static final int CHUNK_BITS = 12;
+    private static final int SLOTS_PER_CHUNK = 1 << CHUNK_BITS;
+    private static final long CHUNK_BYTES = (long) SLOTS_PER_CHUNK * SLOT_BYTES;
+    // palette[0] is reserved for empty cells
+    private static final int MAX_PALETTE_SIZE = 1 << Short.SIZE;
+    private static final long SLOT_RECORD_BYTES = Footprint.align(Footprint.OBJECT_HEADER + Integer.BYTES * 2L);
+
+    private static final class Slot {
+        private final int index;
+        private int size;
+
+        private Slot(int index) {
+            this.index = index;
+        }
+    }
+
+    private final Path directory;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> chunkList = new ArrayList<>();
+    private final LongObjectMap<Slot> slots = new LongObjectMap<>();
+    private final List<Block> palette = new ArrayList<>();
+    private final Map<Block, Integer> paletteIndexMap = new HashMap<>();
+    // snapshot of palette for section reads, dropped whenever the palette grows
+    private Block[] paletteArray;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int slotCount;
+    private int size;
+    private long lastKey;
+    private Slot lastSlot;
+
+    public MappedBlockStorage() {
+        this(Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    public MappedBlockStorage(@NonNull Path directory) {
+        this.directory = directory;
+        try {
+            final var file = Files.createTempFile(directory, "structure-", ".sections");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                       StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        palette.add(null);
+    }
+
+    @Override
+    public Block put(int x, int y, int z, Block block) {
+        final var key = SectionBlockStorage.sectionKey(x >> Section.BITS, y >> Section.BITS, z >> Section.BITS);
+        var slot = findSlot(key);
+        if (null == slot) {
+            slot = allocateSlot(key);
+        }
+        final var offset = offset(slot.index, Section.index(x, y, z));
+        final var chunk = chunk(slot.index);
+        final var oldPaletteIndex = Short.toUnsignedInt(chunk.getShort(offset));
+        chunk.putShort(offset, (short) paletteIndex(block));
+        if (0 == oldPaletteIndex) {
+            ++slot.size;
+            ++size;
+        }
+        return palette.get(oldPaletteIndex);
+    }
+
+    @Override
+    public Block get(int x, int y, int z) {
+        final var slot = findSlot(SectionBlockStorage.sectionKey(x >> Section.BITS, y >> Section.BITS, z >> Section.BITS));
+        if (null == slot) {
+            return null;
+        }
+        return palette.get(Short.toUnsignedInt(chunk(slot.index).getShort(offset(slot.index, Section.index(x, y, z)))));
+    }
+
+    @Override
+    public Block remove(int x, int y, int z) {
+        final var key = SectionBlockStorage.sectionKey(x >> Section.BITS, y >> Section.BITS, z >> Section.BITS);
+        final var slot = findSlot(key);
+        if (null == slot) {
+            return null;
+        }
+        final var offset = offset(slot.index, Section.index(x, y, z));
+        final var chunk = chunk(slot.index);
+        final var oldPaletteIndex = Short.toUnsignedInt(chunk.getShort(offset));
+        if (0 == oldPaletteIndex) {
+            return null;
+        }
+        chunk.putShort(offset, (short) 0);
+        --size;
+        if (0 == --slot.size) {
+            // every cell of the slot is zero again, so it can be handed out as is
+            slots.remove(key);
+            lastSlot = null;
+            if (freeSlots.length == freeSlotCount) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+            }
+            freeSlots[freeSlotCount++] = slot.index;
+        }
+        return palette.get(oldPaletteIndex);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(BlockConsumer consumer) {
+        slots.forEach((key, slot) -> forEach(key, slot, new int[] { 0, Section.LENGTH, 0, Section.LENGTH, 0, Section.LENGTH }, consumer));
+    }
+
+    @Override
+    public void forEach(Range3 range3, BlockConsumer consumer) {
+        if (range3.isEmpty()) {
+            return;
+        }
+        for (final var key : sectionKeys(range3)) {
+            forEach(key, slots.get(key), SectionBlockStorage.clip(range3, key), consumer);
+        }
+    }
+
+    @Override
+    public boolean anyMatch(Range3 range3, BlockPredicate predicate) {
+        if (range3.isEmpty()) {
+            return false;
+        }
+        for (final var key : sectionKeys(range3)) {
+            final var xOffset = SectionBlockStorage.sectionX(key) << Section.BITS;
+            final var yOffset = SectionBlockStorage.sectionY(key) << Section.BITS;
+            final var zOffset = SectionBlockStorage.sectionZ(key) << Section.BITS;
+            final var slot = slots.get(key);
+            final var chunk = chunk(slot.index);
+            final var box = SectionBlockStorage.clip(range3, key);
+            for (var y = box[2]; y < box[3]; ++y) {
+                for (var z = box[4]; z < box[5]; ++z) {
+                    for (var x = box[0]; x < box[1]; ++x) {
+                        final var paletteIndex = Short.toUnsignedInt(chunk.getShort(offset(slot.index, Section.index(x, y, z))));
+                        if (0 != paletteIndex && predicate.test(xOffset + x, yOffset + y, zOffset + z, palette.get(paletteIndex))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public MaterialBill countBlocks() {
+        final var counts = new long[palette.size()];
+        slots.forEach((key, slot) -> {
+            final var chunk = chunk(slot.index);
+            final var offset = offset(slot.index, 0);
+            for (var index = 0; index < Section.VOLUME; ++index) {
+                ++counts[Short.toUnsignedInt(chunk.getShort(offset + index * Short.BYTES))];
+            }
+        });
+        final var materialBill = new MaterialBill();
+        for (var i = 1; i < counts.length; ++i) {
+            if (0 != counts[i]) {
+                materialBill.add(palette.get(i), counts[i]);
+            }
+        }
+        return materialBill;
+    }
+
+    @Override
+    public long estimateBytes() {
+        return slots.estimateBytes() + SLOT_RECORD_BYTES * slots.size() +
+               Footprint.hashMapBytes(paletteIndexMap.size()) + Footprint.arrayBytes(palette.size(), Footprint.REFERENCE) +
+               Footprint.arrayBytes(freeSlots.length, Integer.BYTES);
+    }
+
+    @Override
+    public long estimateOffHeapBytes() {
+        return (long) slotCount * SLOT_BYTES;
+    }
+
+    @Override
+    public long[] sectionKeys() {
+        return slots.keys();
+    }
+
+    @Override
+    public Block[] readSection(long key, int[] cells) {
+        final var slot = slots.get(key);
+        if (null == slot) {
+            return null;
+        }
+        final var chunk = chunk(slot.index);
+        final var offset = offset(slot.index, 0);
+        for (var index = 0; index < Section.VOLUME; ++index) {
+            cells[index] = Short.toUnsignedInt(chunk.getShort(offset + index * Short.BYTES));
+        }
+        if (null == paletteArray) {
+            paletteArray = palette.toArray(new Block[0]);
+        }
+        return paletteArray;
+    }
+
+    // copies and empty storages open a file of their own, close them too
+    @Override
+    public MappedBlockStorage copy() {
+        final var storage = new MappedBlockStorage(directory);
+        storage.palette.addAll(palette.subList(1, palette.size()));
+        storage.paletteIndexMap.putAll(paletteIndexMap);
+        slots.forEach((key, slot) -> {
+            final var newSlot = storage.allocateSlot(key);
+            newSlot.size = slot.size;
+            storage.chunk(newSlot.index).put(offset(newSlot.index, 0), chunk(slot.index), offset(slot.index, 0), SLOT_BYTES);
+        });
+        storage.size = size;
+        return storage;
+    }
+
+    @Override
+    public MappedBlockStorage empty() {
+        return new MappedBlockStorage(directory);
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    // the mapping itself is released once the buffers are collected
+    @Override
+    public void close() {
+        chunkList.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void forEach(long key, Slot slot, int[] box, BlockConsumer consumer) {
+        final var xOffset = SectionBlockStorage.sectionX(key) << Section.BITS;
+        final var yOffset = SectionBlockStorage.sectionY(key) << Section.BITS;
+        final var zOffset = SectionBlockStorage.sectionZ(key) << Section.BITS;
+        final var chunk = chunk(slot.index);
+        for (var y = box[2]; y < box[3]; ++y) {
+            for (var z = box[4]; z < box[5]; ++z) {
+                for (var x = box[0]; x < box[1]; ++x) {
+                    final var paletteIndex = Short.toUnsignedInt(chunk.getShort(offset(slot.index, Section.index(x, y, z))));
+                    if (0 != paletteIndex) {
+                        consumer.accept(xOffset + x, yOffset + y, zOffset + z, palette.get(paletteIndex));
+                    }
+                }
+            }
+        }
+    }
+
+    private int paletteIndex(Block block) {
+        final var paletteIndex = paletteIndexMap.get(block);
+        if (null != paletteIndex) {
+            return paletteIndex;
+        }
+        if (MAX_PALETTE_SIZE <= palette.size()) {
+            throw new OcException("too many distinct blocks : %d", palette.size());
+        }
+        paletteIndexMap.put(block, palette.size());
+        palette.add(block);
+        paletteArray = null;
+        return palette.size() - 1;
+    }
+
+    private Slot allocateSlot(long key) {
+        final var slot = new Slot(0 < freeSlotCount ? freeSlots[--freeSlotCount] : slotCount++);
+        if (chunkList.size() <= slot.index >> CHUNK_BITS) {
+            try {
+                final var chunk = channel.map(FileChannel.MapMode.READ_WRITE, chunkList.size() * CHUNK_BYTES, CHUNK_BYTES);
+                chunk.order(ByteOrder.nativeOrder());
+                chunkList.add(chunk);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        slots.put(key, slot);
+        lastKey = key;
+        lastSlot = slot;
+        return slot;
+    }
+
+    // allocated sections meeting a non-empty range3, looked up one by one when the range spans fewer sections
+    // than are allocated, the way SectionBlockStorage.forEach(Range3) does
+    private long[] sectionKeys(Range3 range3) {
+        final var minSx = range3.getX().getMin() >> Section.BITS;
+        final var maxSx = range3.getX().getMax() >> Section.BITS;
+        final var minSy = range3.getY().getMin() >> Section.BITS;
+        final var maxSy = range3.getY().getMax() >> Section.BITS;
+        final var minSz = range3.getZ().getMin() >> Section.BITS;
+        final var maxSz = range3.getZ().getMax() >> Section.BITS;
+        final var sectionCount = (long) (maxSx - minSx + 1) * (maxSy - minSy + 1) * (maxSz - minSz + 1);
+        final var candidates = sectionCount <= slots.size() ? SectionBlockStorage.sectionKeys(range3) : slots.keys();
+        final var keys = new long[Math.min(candidates.length, slots.size())];
+        var count = 0;
+        for (final var key : candidates) {
+            final var sx = SectionBlockStorage.sectionX(key);
+            final var sy = SectionBlockStorage.sectionY(key);
+            final var sz = SectionBlockStorage.sectionZ(key);
+            if (minSx <= sx && sx <= maxSx && minSy <= sy && sy <= maxSy && minSz <= sz && sz <= maxSz && slots.containsKey(key)) {
+                keys[count++] = key;
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    private Slot findSlot(long key) {
+        if (null != lastSlot && lastKey == key) {
+            return lastSlot;
+        }
+        final var slot = slots.get(key);
+        if (null != slot) {
+            lastKey = key;
+            lastSlot = slot;
+        }
+        return slot;
+    }
+
+    private MappedByteBuffer chunk(int slotIndex) {
+        return chunkList.get(slotIndex >> CHUNK_BITS);
+    }
+
+    private static int offset(int slotIndex, int index) {
+        return (slotIndex & (SLOTS_PER_CHUNK - 1)) * SLOT_BYTES + index * Short.BYTES;
+    }
+}
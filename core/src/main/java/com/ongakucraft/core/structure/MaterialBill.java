@@ -0,0 +1,137 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+import com.ongakucraft.core.block.BlockId;
+import com.ongakucraft.core.block.BlockStateRegistry;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// registered states are counted in arrays indexed by state id, only unregistered ones go through a map.
+// state ids are per registry, so the arrays follow the registry of the first registered block and
+// states of any other registry are remapped onto it
+public final class MaterialBill implements StructureListener {
+    private BlockStateRegistry registry;
+    private Block[] states;
+    private long[] stateCounts;
+    private final Map<Block, Long> unregisteredCounts;
+    private long total;
+
+    public MaterialBill() {
+        states = new Block[0];
+        stateCounts = new long[0];
+        unregisteredCounts = new HashMap<>();
+    }
+
+    private MaterialBill(MaterialBill other) {
+        registry = other.registry;
+        states = other.states.clone();
+        stateCounts = other.stateCounts.clone();
+        unregisteredCounts = new HashMap<>(other.unregisteredCounts);
+        total = other.total;
+    }
+
+    public MaterialBill copy() {
+        return new MaterialBill(this);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getCount(@NonNull Block block) {
+        if (!block.isRegistered()) {
+            return unregisteredCounts.getOrDefault(block, 0L);
+        }
+        final var state = registry == block.getRegistry() ? block : null == registry ? null : registry.findState(block);
+        if (null == state) {
+            return 0;
+        }
+        final var stateId = state.getStateId();
+        return stateId < stateCounts.length ? stateCounts[stateId] : 0;
+    }
+
+    public Map<Block, Long> byState() {
+        final var counts = new LinkedHashMap<Block, Long>();
+        for (var i = 0; i < stateCounts.length; ++i) {
+            if (0 != stateCounts[i]) {
+                counts.put(states[i], stateCounts[i]);
+            }
+        }
+        counts.putAll(unregisteredCounts);
+        return counts;
+    }
+
+    public Map<BlockId, Long> byId() {
+        final var counts = new LinkedHashMap<BlockId, Long>();
+        for (var i = 0; i < stateCounts.length; ++i) {
+            if (0 != stateCounts[i]) {
+                counts.merge(states[i].getId(), stateCounts[i], Long::sum);
+            }
+        }
+        unregisteredCounts.forEach((block, count) -> counts.merge(block.getId(), count, Long::sum));
+        return counts;
+    }
+
+    public void add(@NonNull Block block, long count) {
+        if (0 == count) {
+            return;
+        }
+        total += count;
+        if (!block.isRegistered()) {
+            final long newCount = unregisteredCounts.merge(block, count, Long::sum);
+            if (0 == newCount) {
+                unregisteredCounts.remove(block);
+            }
+            return;
+        }
+        if (null == registry) {
+            registry = block.getRegistry();
+        }
+        final var state = registry == block.getRegistry() ? block : registry.register(block);
+        final var stateId = state.getStateId();
+        if (stateCounts.length <= stateId) {
+            final var length = Math.max(stateId + 1, stateCounts.length * 2);
+            states = Arrays.copyOf(states, length);
+            stateCounts = Arrays.copyOf(stateCounts, length);
+        }
+        states[stateId] = state;
+        stateCounts[stateId] += count;
+    }
+
+    public void addAll(@NonNull MaterialBill other) {
+        for (var i = 0; i < other.stateCounts.length; ++i) {
+            if (0 != other.stateCounts[i]) {
+                add(other.states[i], other.stateCounts[i]);
+            }
+        }
+        other.unregisteredCounts.forEach(this::add);
+    }
+
+    @Override
+    public void onBlockChanged(int x, int y, int z, Block oldBlock, Block newBlock) {
+        if (null != oldBlock) {
+            add(oldBlock, -1);
+        }
+        if (null != newBlock) {
+            add(newBlock, 1);
+        }
+    }
+
+    @Override
+    public void onRotated(int times) {
+        if (0 == times % 4) {
+            return;
+        }
+        final var rotated = new MaterialBill();
+        byState().forEach((block, count) -> rotated.add(block.rotate(times), count));
+        registry = rotated.registry;
+        states = rotated.states;
+        stateCounts = rotated.stateCounts;
+        unregisteredCounts.clear();
+        unregisteredCounts.putAll(rotated.unregisteredCounts);
+    }
+}
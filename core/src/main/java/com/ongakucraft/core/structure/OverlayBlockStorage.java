@@ -0,0 +1,140 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.OcException;
+import com.ongakucraft.core.block.Block;
+
+// reads fall through to the live base structure, writes and removals only land in the journal
+final class OverlayBlockStorage implements BlockStorage {
+    private static final Object REMOVED = new Object();
+
+    private final Structure base;
+    private final LongObjectMap<Object> journal;
+    // blocks the journal adds over the base, counted as writes land so it assumes the base is not written while overlaid
+    private int sizeDelta;
+
+    OverlayBlockStorage(Structure base) {
+        this(base, new LongObjectMap<>());
+    }
+
+    private OverlayBlockStorage(Structure base, LongObjectMap<Object> journal) {
+        this.base = base;
+        this.journal = journal;
+    }
+
+    int journalSize() {
+        return journal.size();
+    }
+
+    @Override
+    public Block put(int x, int y, int z, Block block) {
+        final var oldBlock = toBlock(journal.put(checkedKey(x, y, z), block), x, y, z);
+        if (null == oldBlock) {
+            ++sizeDelta;
+        }
+        return oldBlock;
+    }
+
+    @Override
+    public Block get(int x, int y, int z) {
+        // the journal only holds keyable positions, anything further out is the base as is
+        if (!Position.isKeyable(x, y, z)) {
+            return base.get(x, y, z);
+        }
+        final var value = journal.get(Position.key(x, y, z));
+        return null == value ? base.get(x, y, z) : toBlock(value, x, y, z);
+    }
+
+    @Override
+    public Block remove(int x, int y, int z) {
+        final var key = checkedKey(x, y, z);
+        final var value = journal.get(key);
+        final Block oldBlock;
+        if (null == value) {
+            oldBlock = base.get(x, y, z);
+            if (null != oldBlock) {
+                journal.put(key, REMOVED);
+            }
+        } else {
+            journal.put(key, REMOVED);
+            oldBlock = REMOVED == value ? null : (Block) value;
+        }
+        if (null != oldBlock) {
+            --sizeDelta;
+        }
+        return oldBlock;
+    }
+
+    @Override
+    public int size() {
+        return base.size() + sizeDelta;
+    }
+
+    @Override
+    public void forEach(BlockConsumer consumer) {
+        base.forEach((x, y, z, block) -> {
+            if (!isJournaled(x, y, z)) {
+                consumer.accept(x, y, z, block);
+            }
+        });
+        journal.forEach((key, value) -> {
+            if (REMOVED != value) {
+                consumer.accept(Position.keyX(key), Position.keyY(key), Position.keyZ(key), (Block) value);
+            }
+        });
+    }
+
+    @Override
+    public void forEach(Range3 range3, BlockConsumer consumer) {
+        base.forEach(range3, (x, y, z, block) -> {
+            if (!isJournaled(x, y, z)) {
+                consumer.accept(x, y, z, block);
+            }
+        });
+        journal.forEach((key, value) -> {
+            final var x = Position.keyX(key);
+            final var y = Position.keyY(key);
+            final var z = Position.keyZ(key);
+            if (REMOVED != value && range3.contains(x, y, z)) {
+                consumer.accept(x, y, z, (Block) value);
+            }
+        });
+    }
+
+    // only the journal, the base structure is accounted for on its own
+    @Override
+    public long estimateBytes() {
+        return journal.estimateBytes();
+    }
+
+    @Override
+    public BlockStorage copy() {
+        final var storage = empty();
+        forEach(storage::put);
+        return storage;
+    }
+
+    @Override
+    public BlockStorage empty() {
+        return base.storage.empty();
+    }
+
+    // unkeyable base cells can never be journaled, so they are passed through as they are
+    private boolean isJournaled(int x, int y, int z) {
+        return Position.isKeyable(x, y, z) && journal.containsKey(Position.key(x, y, z));
+    }
+
+    // the base storages take coordinates Position.key cannot pack, refuse those before anything is journaled
+    private static long checkedKey(int x, int y, int z) {
+        if (!Position.isKeyable(x, y, z)) {
+            throw new OcException("overlay writes need x and z in [-8388608, 8388607] and y in [-32768, 32767] : %d %d %d", x, y, z);
+        }
+        return Position.key(x, y, z);
+    }
+
+    private Block toBlock(Object value, int x, int y, int z) {
+        if (null == value) {
+            return base.get(x, y, z);
+        }
+        return REMOVED == value ? null : (Block) value;
+    }
+}
@@ -6,16 +6,70 @@ import lombok.*;
 
 import static lombok.EqualsAndHashCode.CacheStrategy.LAZY;
 
-@AllArgsConstructor(staticName = "of")
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
 @EqualsAndHashCode(cacheStrategy = LAZY)
 @Getter
 public final class Position {
+    // positions in [-16, 16) on every axis are shared, filled on first use
+    private static final int CACHE_BITS = 5;
+    private static final int CACHE_OFFSET = 1 << (CACHE_BITS - 1);
+    private static final Position[] CACHE = new Position[1 << (CACHE_BITS * 3)];
     public static final Position ZERO = of(0, 0, 0);
+    private static final int XZ_BITS = 24;
+    private static final int Y_BITS = 16;
+
+    public static Position of(int x, int y, int z) {
+        final var cx = x + CACHE_OFFSET;
+        final var cy = y + CACHE_OFFSET;
+        final var cz = z + CACHE_OFFSET;
+        if (0 != (cx | cy | cz) >>> CACHE_BITS) {
+            return new Position(x, y, z);
+        }
+        final var index = (cx << (CACHE_BITS * 2)) | (cy << CACHE_BITS) | cz;
+        var position = CACHE[index];
+        if (null == position) {
+            position = new Position(x, y, z);
+            CACHE[index] = position;
+        }
+        return position;
+    }
+
+    // x and z in [-2^23, 2^23), y in [-2^15, 2^15)
+    public static boolean isKeyable(int x, int y, int z) {
+        return x >> (XZ_BITS - 1) == x >> 31 && y >> (Y_BITS - 1) == y >> 31 && z >> (XZ_BITS - 1) == z >> 31;
+    }
+
+    public static long key(int x, int y, int z) {
+        if (!isKeyable(x, y, z)) {
+            throw new OcException("position out of key range : %d %d %d", x, y, z);
+        }
+        return ((x & ((1L << XZ_BITS) - 1)) << (XZ_BITS + Y_BITS)) | ((z & ((1L << XZ_BITS) - 1)) << Y_BITS) | (y & ((1L << Y_BITS) - 1));
+    }
+
+    public static int keyX(long key) {
+        return (int) (key >> (XZ_BITS + Y_BITS));
+    }
+
+    public static int keyY(long key) {
+        return (int) (key << (Long.SIZE - Y_BITS) >> (Long.SIZE - Y_BITS));
+    }
+
+    public static int keyZ(long key) {
+        return (int) (key << XZ_BITS >> (Long.SIZE - XZ_BITS));
+    }
+
+    public static Position ofKey(long key) {
+        return of(keyX(key), keyY(key), keyZ(key));
+    }
 
     @With private final int x;
     @With private final int y;
     @With private final int z;
 
+    public long toKey() {
+        return key(x, y, z);
+    }
+
     public Position step(@NonNull Direction dir) {
         return step(dir, 1);
     }
@@ -2,6 +2,7 @@ package com.ongakucraft.core.structure;
 
 import com.ongakucraft.core.OcException;
 import lombok.Getter;
+import lombok.NonNull;
 
 @Getter
 public final class Range {
@@ -39,10 +40,19 @@ public final class Range {
         return stop - 1;
     }
 
+    public boolean isEmpty() {
+        return start == stop;
+    }
+
     public boolean contains(int value) {
         return start <= value && value < stop;
     }
 
+    public Range intersect(@NonNull Range other) {
+        final var newStart = Math.max(start, other.start);
+        return of(newStart, Math.max(newStart, Math.min(stop, other.stop)));
+    }
+
     public Range translate(int value) {
         return of(start + value, stop + value);
     }
@@ -15,6 +15,18 @@ public final class Range3 {
     @NonNull private final Range y;
     @NonNull private final Range z;
 
+    public boolean isEmpty() {
+        return x.isEmpty() || y.isEmpty() || z.isEmpty();
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return this.x.contains(x) && this.y.contains(y) && this.z.contains(z);
+    }
+
+    public Range3 intersect(@NonNull Range3 other) {
+        return of(x.intersect(other.x), y.intersect(other.y), z.intersect(other.z));
+    }
+
     public boolean contains(Position position) {
         return x.contains(position.getX()) && y.contains(position.getY()) && z.contains(position.getZ());
     }
@@ -24,7 +36,7 @@ public final class Range3 {
     }
 
     public Range3 rotate(int times) {
-        if (0 == times % 4) {
+        if (0 == times % 4 || isEmpty()) {
             return this;
         }
         final var minPosition = Position.of(x.getMin(), 0, z.getMin()).rotate(times);
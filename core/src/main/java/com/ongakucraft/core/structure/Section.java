@@ -0,0 +1,255 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+
+import java.util.Arrays;
+
+// 16x16x16 blocks, indexed in y-z-x order, each cell holds an index into a per-section palette
+final class Section {
+    static final int BITS = 4;
+    static final int LENGTH = 1 << BITS;
+    static final int MASK = LENGTH - 1;
+    static final int VOLUME = LENGTH * LENGTH * LENGTH;
+    private static final int MIN_BITS_PER_ENTRY = 4;
+
+    static int index(int x, int y, int z) {
+        return ((y & MASK) << (BITS * 2)) | ((z & MASK) << BITS) | (x & MASK);
+    }
+
+    static int x(int index) {
+        return index & MASK;
+    }
+
+    static int y(int index) {
+        return index >>> (BITS * 2);
+    }
+
+    static int z(int index) {
+        return (index >>> BITS) & MASK;
+    }
+
+    @FunctionalInterface
+    interface IndexConsumer {
+        void accept(int index, Block block);
+    }
+
+    @FunctionalInterface
+    interface CountConsumer {
+        void accept(Block block, int count);
+    }
+
+    // palette[0] is reserved for empty cells
+    private Block[] palette;
+    private int[] references;
+    private int paletteSize;
+    private int bitsPerEntry;
+    private long[] data;
+    private int size;
+    // token of the storage allowed to modify this section in place, everyone else copies it first
+    Object owner;
+
+    Section() {
+        palette = new Block[1 << MIN_BITS_PER_ENTRY];
+        references = new int[palette.length];
+        paletteSize = 1;
+        bitsPerEntry = MIN_BITS_PER_ENTRY;
+        data = new long[dataLength(bitsPerEntry)];
+    }
+
+    private Section(Section other) {
+        palette = other.palette.clone();
+        references = other.references.clone();
+        paletteSize = other.paletteSize;
+        bitsPerEntry = other.bitsPerEntry;
+        data = other.data.clone();
+        size = other.size;
+    }
+
+    Section copy() {
+        return new Section(this);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long estimateBytes() {
+        return Footprint.align(Footprint.OBJECT_HEADER + Footprint.REFERENCE * 4L + Integer.BYTES * 3L) +
+               Footprint.arrayBytes(palette.length, Footprint.REFERENCE) +
+               Footprint.arrayBytes(references.length, Integer.BYTES) +
+               Footprint.arrayBytes(data.length, Long.BYTES);
+    }
+
+    boolean isEmpty() {
+        return 0 == size;
+    }
+
+    Block get(int index) {
+        return palette[read(index)];
+    }
+
+    Block set(int index, Block block) {
+        final var oldPaletteIndex = read(index);
+        final var oldBlock = palette[oldPaletteIndex];
+        if (oldBlock == block) {
+            return oldBlock;
+        }
+        final var newPaletteIndex = null == block ? 0 : paletteIndex(block);
+        if (oldPaletteIndex == newPaletteIndex) {
+            return oldBlock;
+        }
+        write(index, newPaletteIndex);
+        if (0 == oldPaletteIndex) {
+            ++size;
+        } else {
+            release(oldPaletteIndex);
+        }
+        if (0 == newPaletteIndex) {
+            --size;
+        } else {
+            ++references[newPaletteIndex];
+        }
+        return oldBlock;
+    }
+
+    void forEach(IndexConsumer consumer) {
+        if (0 == size) {
+            return;
+        }
+        for (var index = 0; index < VOLUME; ++index) {
+            final var paletteIndex = read(index);
+            if (0 != paletteIndex) {
+                consumer.accept(index, palette[paletteIndex]);
+            }
+        }
+    }
+
+    // palette index of every cell in index order, 0 for empty cells. the returned palette is the live one
+    Block[] read(int[] cells) {
+        final var entriesPerLong = Long.SIZE / bitsPerEntry;
+        final var mask = (1L << bitsPerEntry) - 1;
+        var index = 0;
+        for (var i = 0; i < data.length && index < VOLUME; ++i) {
+            var word = data[i];
+            for (var j = 0; j < entriesPerLong && index < VOLUME; ++j) {
+                cells[index++] = (int) (word & mask);
+                word >>>= bitsPerEntry;
+            }
+        }
+        return palette;
+    }
+
+    // box is {minX, maxX, minY, maxY, minZ, maxZ} in section coordinates with exclusive maxima,
+    // returns the number of cells that were empty before
+    int fill(int[] box, Block block) {
+        return write(box, block, false);
+    }
+
+    void replace(int[] box, Block block) {
+        write(box, block, true);
+    }
+
+    void forEachCount(CountConsumer consumer) {
+        for (var i = 1; i < paletteSize; ++i) {
+            if (null != palette[i]) {
+                consumer.accept(palette[i], references[i]);
+            }
+        }
+    }
+
+    private int write(int[] box, Block block, boolean onlyPresent) {
+        final var newPaletteIndex = paletteIndex(block);
+        var added = 0;
+        for (var y = box[2]; y < box[3]; ++y) {
+            for (var z = box[4]; z < box[5]; ++z) {
+                for (var x = box[0]; x < box[1]; ++x) {
+                    final var index = index(x, y, z);
+                    final var oldPaletteIndex = read(index);
+                    if (oldPaletteIndex == newPaletteIndex || (onlyPresent && 0 == oldPaletteIndex)) {
+                        continue;
+                    }
+                    write(index, newPaletteIndex);
+                    ++references[newPaletteIndex];
+                    if (0 == oldPaletteIndex) {
+                        ++added;
+                    } else {
+                        release(oldPaletteIndex);
+                    }
+                }
+            }
+        }
+        if (0 == references[newPaletteIndex]) {
+            palette[newPaletteIndex] = null;
+        }
+        size += added;
+        return added;
+    }
+
+    private int paletteIndex(Block block) {
+        var freeIndex = -1;
+        for (var i = 1; i < paletteSize; ++i) {
+            final var paletteBlock = palette[i];
+            if (null == paletteBlock) {
+                if (-1 == freeIndex) {
+                    freeIndex = i;
+                }
+            } else if (paletteBlock == block || (paletteBlock.hashCode() == block.hashCode() && paletteBlock.equals(block))) {
+                return i;
+            }
+        }
+        if (-1 == freeIndex) {
+            freeIndex = paletteSize++;
+            if (palette.length <= freeIndex) {
+                palette = Arrays.copyOf(palette, palette.length * 2);
+                references = Arrays.copyOf(references, references.length * 2);
+            }
+            if ((1 << bitsPerEntry) <= freeIndex) {
+                resize(bitsPerEntry + 1);
+            }
+        }
+        palette[freeIndex] = block;
+        return freeIndex;
+    }
+
+    private void release(int paletteIndex) {
+        if (0 == --references[paletteIndex]) {
+            palette[paletteIndex] = null;
+        }
+    }
+
+    private void resize(int newBitsPerEntry) {
+        final var oldData = data;
+        final var oldBitsPerEntry = bitsPerEntry;
+        data = new long[dataLength(newBitsPerEntry)];
+        bitsPerEntry = newBitsPerEntry;
+        for (var index = 0; index < VOLUME; ++index) {
+            final var value = read(oldData, oldBitsPerEntry, index);
+            if (0 != value) {
+                write(index, value);
+            }
+        }
+    }
+
+    private int read(int index) {
+        return read(data, bitsPerEntry, index);
+    }
+
+    private void write(int index, int value) {
+        final var entriesPerLong = Long.SIZE / bitsPerEntry;
+        final var wordIndex = index / entriesPerLong;
+        final var shift = (index % entriesPerLong) * bitsPerEntry;
+        final var mask = (1L << bitsPerEntry) - 1;
+        data[wordIndex] = (data[wordIndex] & ~(mask << shift)) | (((long) value & mask) << shift);
+    }
+
+    private static int read(long[] data, int bitsPerEntry, int index) {
+        final var entriesPerLong = Long.SIZE / bitsPerEntry;
+        final var shift = (index % entriesPerLong) * bitsPerEntry;
+        return (int) ((data[index / entriesPerLong] >>> shift) & ((1L << bitsPerEntry) - 1));
+    }
+
+    private static int dataLength(int bitsPerEntry) {
+        final var entriesPerLong = Long.SIZE / bitsPerEntry;
+        return (VOLUME + entriesPerLong - 1) / entriesPerLong;
+    }
+}
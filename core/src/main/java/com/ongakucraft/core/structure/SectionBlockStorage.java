@@ -0,0 +1,407 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+public final class SectionBlockStorage implements BlockStorage, SectionedStorage {
+    private static final int KEY_BITS = 21;
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+    // bulk operations touching at least this many sections run on the common fork-join pool
+    static final int DEFAULT_PARALLEL_THRESHOLD = 8;
+
+    static long sectionKey(int sx, int sy, int sz) {
+        return ((sx & KEY_MASK) << (KEY_BITS * 2)) | ((sz & KEY_MASK) << KEY_BITS) | (sy & KEY_MASK);
+    }
+
+    static int sectionX(long key) {
+        return (int) (key << (Long.SIZE - KEY_BITS * 3) >> (Long.SIZE - KEY_BITS));
+    }
+
+    static int sectionY(long key) {
+        return (int) (key << (Long.SIZE - KEY_BITS) >> (Long.SIZE - KEY_BITS));
+    }
+
+    static int sectionZ(long key) {
+        return (int) (key << (Long.SIZE - KEY_BITS * 2) >> (Long.SIZE - KEY_BITS));
+    }
+
+    // sections and the table itself are shared with copies until one side writes to them
+    private LongObjectMap<Section> sections;
+    private boolean sharedSections;
+    private Object owner;
+    private final int parallelThreshold;
+    private int size;
+    private long lastKey;
+    private Section lastSection;
+
+    public SectionBlockStorage() {
+        this(DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    SectionBlockStorage(int parallelThreshold) {
+        this(new LongObjectMap<>(), false, 0, parallelThreshold);
+    }
+
+    private SectionBlockStorage(LongObjectMap<Section> sections, boolean sharedSections, int size, int parallelThreshold) {
+        this.sections = sections;
+        this.sharedSections = sharedSections;
+        this.size = size;
+        this.parallelThreshold = parallelThreshold;
+        owner = new Object();
+    }
+
+    @Override
+    public Block put(int x, int y, int z, Block block) {
+        final var key = sectionKey(x >> Section.BITS, y >> Section.BITS, z >> Section.BITS);
+        final var section = mutableSection(key, findSection(key));
+        final var oldBlock = section.set(Section.index(x, y, z), block);
+        if (null == oldBlock) {
+            ++size;
+        }
+        return oldBlock;
+    }
+
+    @Override
+    public Block get(int x, int y, int z) {
+        final var section = findSection(sectionKey(x >> Section.BITS, y >> Section.BITS, z >> Section.BITS));
+        return null == section ? null : section.get(Section.index(x, y, z));
+    }
+
+    @Override
+    public Block remove(int x, int y, int z) {
+        final var key = sectionKey(x >> Section.BITS, y >> Section.BITS, z >> Section.BITS);
+        final var sharedSection = findSection(key);
+        if (null == sharedSection) {
+            return null;
+        }
+        final var index = Section.index(x, y, z);
+        if (null == sharedSection.get(index)) {
+            return null;
+        }
+        final var section = mutableSection(key, sharedSection);
+        final var oldBlock = section.set(index, null);
+        if (null != oldBlock) {
+            --size;
+            if (section.isEmpty()) {
+                sections.remove(key);
+                lastSection = null;
+            }
+        }
+        return oldBlock;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(BlockConsumer consumer) {
+        sections.forEach((key, section) -> {
+            final var xOffset = sectionX(key) << Section.BITS;
+            final var yOffset = sectionY(key) << Section.BITS;
+            final var zOffset = sectionZ(key) << Section.BITS;
+            section.forEach((index, block) -> consumer.accept(xOffset + Section.x(index),
+                                                              yOffset + Section.y(index),
+                                                              zOffset + Section.z(index),
+                                                              block));
+        });
+    }
+
+    @Override
+    public void forEach(Range3 range3, BlockConsumer consumer) {
+        if (range3.isEmpty()) {
+            return;
+        }
+        final var minSx = range3.getX().getMin() >> Section.BITS;
+        final var maxSx = range3.getX().getMax() >> Section.BITS;
+        final var minSy = range3.getY().getMin() >> Section.BITS;
+        final var maxSy = range3.getY().getMax() >> Section.BITS;
+        final var minSz = range3.getZ().getMin() >> Section.BITS;
+        final var maxSz = range3.getZ().getMax() >> Section.BITS;
+        final var sectionCount = (long) (maxSx - minSx + 1) * (maxSy - minSy + 1) * (maxSz - minSz + 1);
+        if (sectionCount <= sections.size()) {
+            for (final var key : sectionKeys(range3)) {
+                final var section = sections.get(key);
+                if (null != section) {
+                    forEach(range3, key, section, consumer);
+                }
+            }
+        } else {
+            sections.forEach((key, section) -> {
+                final var sx = sectionX(key);
+                final var sy = sectionY(key);
+                final var sz = sectionZ(key);
+                if (minSx <= sx && sx <= maxSx && minSy <= sy && sy <= maxSy && minSz <= sz && sz <= maxSz) {
+                    forEach(range3, key, section, consumer);
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean anyMatch(Range3 range3, BlockPredicate predicate) {
+        if (range3.isEmpty()) {
+            return false;
+        }
+        final var minSx = range3.getX().getMin() >> Section.BITS;
+        final var maxSx = range3.getX().getMax() >> Section.BITS;
+        final var minSy = range3.getY().getMin() >> Section.BITS;
+        final var maxSy = range3.getY().getMax() >> Section.BITS;
+        final var minSz = range3.getZ().getMin() >> Section.BITS;
+        final var maxSz = range3.getZ().getMax() >> Section.BITS;
+        final var sectionCount = (long) (maxSx - minSx + 1) * (maxSy - minSy + 1) * (maxSz - minSz + 1);
+        for (final var key : sectionCount <= sections.size() ? sectionKeys(range3) : sections.keys()) {
+            final var sx = sectionX(key);
+            final var sy = sectionY(key);
+            final var sz = sectionZ(key);
+            if (sx < minSx || maxSx < sx || sy < minSy || maxSy < sy || sz < minSz || maxSz < sz) {
+                continue;
+            }
+            final var section = sections.get(key);
+            if (null == section) {
+                continue;
+            }
+            final var box = clip(range3, key);
+            for (var y = box[2]; y < box[3]; ++y) {
+                for (var z = box[4]; z < box[5]; ++z) {
+                    for (var x = box[0]; x < box[1]; ++x) {
+                        final var block = section.get(Section.index(x, y, z));
+                        if (null != block && predicate.test((sx << Section.BITS) + x, (sy << Section.BITS) + y,
+                                                            (sz << Section.BITS) + z, block)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void fill(Range3 range3, Block block) {
+        if (range3.isEmpty()) {
+            return;
+        }
+        final var keys = sectionKeys(range3);
+        final var targets = new Section[keys.length];
+        for (var i = 0; i < keys.length; ++i) {
+            targets[i] = mutableSection(keys[i], sections.get(keys[i]));
+        }
+        final var added = new int[keys.length];
+        run(keys.length, i -> added[i] = targets[i].fill(clip(range3, keys[i]), block));
+        for (final var count : added) {
+            size += count;
+        }
+    }
+
+    @Override
+    public void replace(Range3 range3, Block block) {
+        if (range3.isEmpty()) {
+            return;
+        }
+        final var keys = sectionKeys(range3);
+        final var targets = new Section[keys.length];
+        for (var i = 0; i < keys.length; ++i) {
+            final var section = sections.get(keys[i]);
+            targets[i] = null == section ? null : mutableSection(keys[i], section);
+        }
+        run(keys.length, i -> {
+            if (null != targets[i]) {
+                targets[i].replace(clip(range3, keys[i]), block);
+            }
+        });
+    }
+
+    @Override
+    public void putAll(BlockBatch batch, boolean onlyAbsent) {
+        // counting sort by section keeps the batch order within each section, so later writes still win
+        final var bucketMap = new LongObjectMap<Integer>();
+        final List<Section> targetList = new ArrayList<>();
+        final var buckets = new int[batch.size];
+        for (var i = 0; i < batch.size; ++i) {
+            final var key = sectionKey(batch.xs[i] >> Section.BITS, batch.ys[i] >> Section.BITS, batch.zs[i] >> Section.BITS);
+            var bucket = bucketMap.get(key);
+            if (null == bucket) {
+                bucket = targetList.size();
+                bucketMap.put(key, bucket);
+                targetList.add(mutableSection(key, sections.get(key)));
+            }
+            buckets[i] = bucket;
+        }
+        final var bucketCount = targetList.size();
+        final var offsets = new int[bucketCount + 1];
+        for (var i = 0; i < batch.size; ++i) {
+            ++offsets[buckets[i] + 1];
+        }
+        for (var i = 0; i < bucketCount; ++i) {
+            offsets[i + 1] += offsets[i];
+        }
+        final var cursors = offsets.clone();
+        final var order = new int[batch.size];
+        for (var i = 0; i < batch.size; ++i) {
+            order[cursors[buckets[i]]++] = i;
+        }
+        final var added = new int[bucketCount];
+        run(bucketCount, bucket -> {
+            final var section = targetList.get(bucket);
+            for (var j = offsets[bucket]; j < offsets[bucket + 1]; ++j) {
+                final var i = order[j];
+                final var index = Section.index(batch.xs[i], batch.ys[i], batch.zs[i]);
+                if (onlyAbsent && null != section.get(index)) {
+                    batch.absent[i] = false;
+                } else if (null == section.set(index, batch.blocks[i])) {
+                    batch.absent[i] = true;
+                    ++added[bucket];
+                } else {
+                    batch.absent[i] = false;
+                }
+            }
+        });
+        for (final var count : added) {
+            size += count;
+        }
+    }
+
+    @Override
+    public MaterialBill countBlocks() {
+        final List<Section> sectionList = new ArrayList<>(sections.size());
+        sections.forEach((key, section) -> sectionList.add(section));
+        final var indexStream = IntStream.range(0, sectionList.size());
+        return (sectionList.size() < parallelThreshold ? indexStream : indexStream.parallel())
+                .collect(MaterialBill::new,
+                         (materialBill, i) -> sectionList.get(i).forEachCount(materialBill::add),
+                         MaterialBill::addAll);
+    }
+
+    // sections shared with copies are counted by every storage holding them
+    @Override
+    public long estimateBytes() {
+        final var bytes = new long[] { sections.estimateBytes() };
+        sections.forEach((key, section) -> bytes[0] += section.estimateBytes());
+        return bytes[0];
+    }
+
+    @Override
+    public long[] sectionKeys() {
+        return sections.keys();
+    }
+
+    @Override
+    public Block[] readSection(long key, int[] cells) {
+        final var section = sections.get(key);
+        return null == section ? null : section.read(cells);
+    }
+
+    @Override
+    public SectionBlockStorage copy() {
+        // a fresh token makes every existing section read-only for both sides
+        owner = new Object();
+        sharedSections = true;
+        return new SectionBlockStorage(sections, true, size, parallelThreshold);
+    }
+
+    @Override
+    public SectionBlockStorage empty() {
+        return new SectionBlockStorage(parallelThreshold);
+    }
+
+    // every task owns a distinct section, so the result does not depend on scheduling
+    private void run(int count, IntConsumer task) {
+        if (count < parallelThreshold) {
+            for (var i = 0; i < count; ++i) {
+                task.accept(i);
+            }
+        } else {
+            IntStream.range(0, count).parallel().forEach(task);
+        }
+    }
+
+    static long[] sectionKeys(Range3 range3) {
+        final var minSx = range3.getX().getMin() >> Section.BITS;
+        final var maxSx = range3.getX().getMax() >> Section.BITS;
+        final var minSy = range3.getY().getMin() >> Section.BITS;
+        final var maxSy = range3.getY().getMax() >> Section.BITS;
+        final var minSz = range3.getZ().getMin() >> Section.BITS;
+        final var maxSz = range3.getZ().getMax() >> Section.BITS;
+        final var keys = new long[(maxSx - minSx + 1) * (maxSy - minSy + 1) * (maxSz - minSz + 1)];
+        var i = 0;
+        for (var sx = minSx; sx <= maxSx; ++sx) {
+            for (var sy = minSy; sy <= maxSy; ++sy) {
+                for (var sz = minSz; sz <= maxSz; ++sz) {
+                    keys[i++] = sectionKey(sx, sy, sz);
+                }
+            }
+        }
+        return keys;
+    }
+
+    // the part of range3 inside the section, see Section.fill for the layout
+    static int[] clip(Range3 range3, long key) {
+        final var xOffset = sectionX(key) << Section.BITS;
+        final var yOffset = sectionY(key) << Section.BITS;
+        final var zOffset = sectionZ(key) << Section.BITS;
+        return new int[] {
+                Math.max(0, range3.getX().getStart() - xOffset), Math.min(Section.LENGTH, range3.getX().getStop() - xOffset),
+                Math.max(0, range3.getY().getStart() - yOffset), Math.min(Section.LENGTH, range3.getY().getStop() - yOffset),
+                Math.max(0, range3.getZ().getStart() - zOffset), Math.min(Section.LENGTH, range3.getZ().getStop() - zOffset)
+        };
+    }
+
+    private static void forEach(Range3 range3, long key, Section section, BlockConsumer consumer) {
+        final var xOffset = sectionX(key) << Section.BITS;
+        final var yOffset = sectionY(key) << Section.BITS;
+        final var zOffset = sectionZ(key) << Section.BITS;
+        final var box = clip(range3, key);
+        if (0 == box[0] && 0 == box[2] && 0 == box[4] &&
+            Section.LENGTH == box[1] && Section.LENGTH == box[3] && Section.LENGTH == box[5]) {
+            section.forEach((index, block) -> consumer.accept(xOffset + Section.x(index),
+                                                              yOffset + Section.y(index),
+                                                              zOffset + Section.z(index),
+                                                              block));
+            return;
+        }
+        for (var y = box[2]; y < box[3]; ++y) {
+            for (var z = box[4]; z < box[5]; ++z) {
+                for (var x = box[0]; x < box[1]; ++x) {
+                    final var block = section.get(Section.index(x, y, z));
+                    if (null != block) {
+                        consumer.accept(xOffset + x, yOffset + y, zOffset + z, block);
+                    }
+                }
+            }
+        }
+    }
+
+    private Section mutableSection(long key, Section section) {
+        if (null != section && owner == section.owner) {
+            return section;
+        }
+        if (sharedSections) {
+            sections = sections.copy();
+            sharedSections = false;
+        }
+        final var newSection = null == section ? new Section() : section.copy();
+        newSection.owner = owner;
+        sections.put(key, newSection);
+        lastKey = key;
+        lastSection = newSection;
+        return newSection;
+    }
+
+    private Section findSection(long key) {
+        if (null != lastSection && lastKey == key) {
+            return lastSection;
+        }
+        final var section = sections.get(key);
+        if (null != section) {
+            lastKey = key;
+            lastSection = section;
+        }
+        return section;
+    }
+}
@@ -0,0 +1,13 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+
+// storages laid out in 16x16x16 sections, lets a walk read a whole section at once instead of looking up every cell
+interface SectionedStorage {
+    // keys of the occupied sections, see SectionBlockStorage.sectionKey
+    long[] sectionKeys();
+
+    // palette index of every cell in Section.index order into cells, 0 for empty cells.
+    // returns the palette the indices point into, null when the section is empty
+    Block[] readSection(long key, int[] cells);
+}
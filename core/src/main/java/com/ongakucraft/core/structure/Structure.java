@@ -1,74 +1,292 @@
 package com.ongakucraft.core.structure;
 
+import com.ongakucraft.core.OcException;
 import com.ongakucraft.core.block.Block;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
-public final class Structure implements Cloneable {
-    Map<Position, Block> grid;
+@Slf4j
+public final class Structure implements Cloneable, AutoCloseable {
+    // below this many blocks bulk operations write block by block and keep the occupancy counters exact
+    private static final int BULK_THRESHOLD = 4096;
+    private static final int ORDERED_KEY_BITS = 21;
+    private static final int ORDERED_KEY_OFFSET = 1 << (ORDERED_KEY_BITS - 1);
+    private static final long ORDERED_KEY_MASK = (1L << ORDERED_KEY_BITS) - 1;
+    // debug aid, a positive budget logs a warning once the estimated storage footprint crosses it
+    private static final long DEFAULT_FOOTPRINT_BUDGET = Long.getLong("ongakucraft.structure.footprintBudget", 0L);
+
+    // storage holds local coordinates, world = rotate(local, rotation) + offset
+    BlockStorage storage;
+    private int rotation;
+    private int xOffset;
+    private int yOffset;
+    private int zOffset;
+    // built on the first bounds query and maintained incrementally afterwards, null until then
+    private AxisOccupancy xOccupancy;
+    private AxisOccupancy yOccupancy;
+    private AxisOccupancy zOccupancy;
+    // bulk writes fall back to block by block writes while anyone is listening
+    private final List<StructureListener> listeners = new ArrayList<>();
+    private long footprintBudget = DEFAULT_FOOTPRINT_BUDGET;
+    // the estimate walks every section, so it is only redone after the structure has grown by an eighth
+    private int nextBudgetCheck;
 
     public Structure() {
-        this(new HashMap<>());
+        this(new SectionBlockStorage());
+    }
+
+    public Structure(@NonNull BlockStorage storage) {
+        this.storage = storage;
     }
 
-    private Structure(Map<Position, Block> grid) {
-        this.grid = grid;
+    private Structure(Structure other) {
+        storage = other.storage.copy();
+        rotation = other.rotation;
+        xOffset = other.xOffset;
+        yOffset = other.yOffset;
+        zOffset = other.zOffset;
+        if (null != other.xOccupancy) {
+            xOccupancy = other.xOccupancy.copy();
+            yOccupancy = other.yOccupancy.copy();
+            zOccupancy = other.zOccupancy.copy();
+        }
     }
 
     @Override
     public Structure clone() {
-        return new Structure(new HashMap<>(grid));
+        return new Structure(this);
+    }
+
+    // releases what the storage holds outside the heap, like the file of a MappedBlockStorage.
+    // copies, cuts and clones of such a structure get storages of their own and have to be closed as well
+    @Override
+    public void close() {
+        if (storage instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                final var exception = new OcException("failed to close storage : %s", e.getMessage());
+                exception.initCause(e);
+                throw exception;
+            }
+        }
+    }
+
+    public Structure overlay() {
+        return new Structure(new OverlayBlockStorage(this));
+    }
+
+    public Footprint getFootprint() {
+        return Footprint.of(this);
+    }
+
+    public void setFootprintBudget(long footprintBudget) {
+        this.footprintBudget = footprintBudget;
+        nextBudgetCheck = 0;
+        checkFootprintBudget();
+    }
+
+    public void addListener(@NonNull StructureListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull StructureListener listener) {
+        listeners.remove(listener);
     }
 
     public void put(@NonNull Position pos, @NonNull Block t) {
-        grid.put(pos, t);
+        put(pos.getX(), pos.getY(), pos.getZ(), t);
+    }
+
+    public void put(long key, @NonNull Block t) {
+        put(Position.keyX(key), Position.keyY(key), Position.keyZ(key), t);
+    }
+
+    public void put(int x, int y, int z, @NonNull Block t) {
+        putBlock(x, y, z, t);
     }
 
     public Block get(@NonNull Position position) {
-        return grid.get(position);
+        return get(position.getX(), position.getY(), position.getZ());
+    }
+
+    public Block get(long key) {
+        return get(Position.keyX(key), Position.keyY(key), Position.keyZ(key));
+    }
+
+    public Block get(int x, int y, int z) {
+        final var inverse = (4 - rotation) & 3;
+        final var dx = x - xOffset;
+        final var dz = z - zOffset;
+        final var block = storage.get(rotateX(dx, dz, inverse), y - yOffset, rotateZ(dx, dz, inverse));
+        return null == block ? null : block.rotate(rotation);
     }
 
     public boolean has(@NonNull Position position) {
-        return grid.containsKey(position);
+        return has(position.getX(), position.getY(), position.getZ());
+    }
+
+    public boolean has(long key) {
+        return has(Position.keyX(key), Position.keyY(key), Position.keyZ(key));
+    }
+
+    public boolean has(int x, int y, int z) {
+        final var inverse = (4 - rotation) & 3;
+        final var dx = x - xOffset;
+        final var dz = z - zOffset;
+        return storage.has(rotateX(dx, dz, inverse), y - yOffset, rotateZ(dx, dz, inverse));
     }
 
     public Block remove(@NonNull Position position) {
-        return grid.remove(position);
+        return remove(position.getX(), position.getY(), position.getZ());
+    }
+
+    public Block remove(long key) {
+        return remove(Position.keyX(key), Position.keyY(key), Position.keyZ(key));
+    }
+
+    public Block remove(int x, int y, int z) {
+        final var inverse = (4 - rotation) & 3;
+        final var dx = x - xOffset;
+        final var dz = z - zOffset;
+        final var oldBlock = storage.remove(rotateX(dx, dz, inverse), y - yOffset, rotateZ(dx, dz, inverse));
+        if (null == oldBlock) {
+            return null;
+        }
+        if (null != xOccupancy) {
+            xOccupancy.remove(x);
+            yOccupancy.remove(y);
+            zOccupancy.remove(z);
+        }
+        final var worldBlock = oldBlock.rotate(rotation);
+        for (final var listener : listeners) {
+            listener.onBlockChanged(x, y, z, worldBlock, null);
+        }
+        return worldBlock;
     }
 
     public int size() {
-        return grid.size();
+        return storage.size();
     }
 
     public Range3 getRange3() {
-        if (grid.isEmpty()) {
+        buildOccupancy();
+        if (xOccupancy.isEmpty()) {
             return Range3.EMPTY;
         }
-        var xMin = Integer.MAX_VALUE;
-        var xMax = Integer.MIN_VALUE;
-        var yMin = Integer.MAX_VALUE;
-        var yMax = Integer.MIN_VALUE;
-        var zMin = Integer.MAX_VALUE;
-        var zMax = Integer.MIN_VALUE;
-        for (final var pos : grid.keySet()) {
-            xMin = Math.min(xMin, pos.getX());
-            xMax = Math.max(xMax, pos.getX());
-            yMin = Math.min(yMin, pos.getY());
-            yMax = Math.max(yMax, pos.getY());
-            zMin = Math.min(zMin, pos.getZ());
-            zMax = Math.max(zMax, pos.getZ());
-        }
-        return Range3.of(Range.of(xMin, xMax + 1), Range.of(yMin, yMax + 1), Range.of(zMin, zMax + 1));
+        return Range3.of(Range.of(xOccupancy.min(), xOccupancy.max() + 1),
+                         Range.of(yOccupancy.min(), yOccupancy.max() + 1),
+                         Range.of(zOccupancy.min(), zOccupancy.max() + 1));
     }
 
     public List<Position> getPositionList() {
-        return grid.keySet().stream().toList();
+        final List<Position> positionList = new ArrayList<>(storage.size());
+        forEach((x, y, z, block) -> positionList.add(Position.of(x, y, z)));
+        return positionList;
+    }
+
+    public void forEach(@NonNull BlockConsumer consumer) {
+        if (0 == rotation && 0 == xOffset && 0 == yOffset && 0 == zOffset) {
+            storage.forEach(consumer);
+            return;
+        }
+        final var rotation = this.rotation;
+        final var xOffset = this.xOffset;
+        final var yOffset = this.yOffset;
+        final var zOffset = this.zOffset;
+        storage.forEach((x, y, z, block) -> consumer.accept(rotateX(x, z, rotation) + xOffset,
+                                                            y + yOffset,
+                                                            rotateZ(x, z, rotation) + zOffset,
+                                                            block.rotate(rotation)));
+    }
+
+    public void forEach(@NonNull Range3 range3, @NonNull BlockConsumer consumer) {
+        final var localRange3 = range3.translate(-xOffset, -yOffset, -zOffset).rotate(4 - rotation);
+        if (0 == rotation && 0 == xOffset && 0 == yOffset && 0 == zOffset) {
+            storage.forEach(localRange3, consumer);
+            return;
+        }
+        final var rotation = this.rotation;
+        final var xOffset = this.xOffset;
+        final var yOffset = this.yOffset;
+        final var zOffset = this.zOffset;
+        storage.forEach(localRange3, (x, y, z, block) -> consumer.accept(rotateX(x, z, rotation) + xOffset,
+                                                                         y + yOffset,
+                                                                         rotateZ(x, z, rotation) + zOffset,
+                                                                         block.rotate(rotation)));
+    }
+
+    // y-z-x order, the order structure files list blocks in. sectioned storages are read one whole section at a time,
+    // only the occupied section keys are sorted and the cells of one layer of sections are kept on the side
+    public void forEachOrdered(@NonNull BlockConsumer consumer) {
+        if (!(storage instanceof SectionedStorage sectionedStorage)) {
+            final var positionList = getPositionList();
+            positionList.sort(Comparator.comparingInt(Position::getY).thenComparingInt(Position::getZ).thenComparingInt(Position::getX));
+            for (final var position : positionList) {
+                consumer.accept(position.getX(), position.getY(), position.getZ(), get(position));
+            }
+            return;
+        }
+        final var rotation = this.rotation;
+        final var inverse = (4 - rotation) & 3;
+        // a quarter turn maps sections onto sections, only the corner moves by one block for mirrored axes
+        final var xCorner = xOffset - (2 == rotation || 3 == rotation ? Section.MASK : 0);
+        final var zCorner = zOffset - (1 == rotation || 2 == rotation ? Section.MASK : 0);
+        final var layer = orderedLayer(rotation);
+        final var keys = orderedSectionKeys(sectionedStorage.sectionKeys(), rotation);
+        final List<int[]> cellsList = new ArrayList<>();
+        final List<Block[]> paletteList = new ArrayList<>();
+        for (var i = 0; i < keys.length; ) {
+            final var sy = orderedY(keys[i]);
+            var j = i;
+            while (j < keys.length && sy == orderedY(keys[j])) {
+                if (cellsList.size() <= j - i) {
+                    cellsList.add(new int[Section.VOLUME]);
+                    paletteList.add(null);
+                }
+                final var sx = orderedX(keys[j]);
+                final var sz = orderedZ(keys[j]);
+                final var localKey = SectionBlockStorage.sectionKey(rotateX(sx, sz, inverse), sy, rotateZ(sx, sz, inverse));
+                paletteList.set(j - i, sectionedStorage.readSection(localKey, cellsList.get(j - i)));
+                ++j;
+            }
+            for (var ly = 0; ly < Section.LENGTH; ++ly) {
+                final var y = (sy << Section.BITS) + ly + yOffset;
+                for (var k = i; k < j; ) {
+                    final var sz = orderedZ(keys[k]);
+                    var m = k;
+                    while (m < j && sz == orderedZ(keys[m])) {
+                        ++m;
+                    }
+                    for (var lz = 0; lz < Section.LENGTH; ++lz) {
+                        final var z = (sz << Section.BITS) + lz + zCorner;
+                        for (var n = k; n < m; ++n) {
+                            final var cells = cellsList.get(n - i);
+                            final var palette = paletteList.get(n - i);
+                            if (null == palette) {
+                                continue;
+                            }
+                            final var xStart = (orderedX(keys[n]) << Section.BITS) + xCorner;
+                            for (var lx = 0; lx < Section.LENGTH; ++lx) {
+                                final var paletteIndex = cells[(ly << (Section.BITS * 2)) | layer[(lz << Section.BITS) | lx]];
+                                if (0 != paletteIndex) {
+                                    consumer.accept(xStart + lx, y, z, palette[paletteIndex].rotate(rotation));
+                                }
+                            }
+                        }
+                    }
+                    k = m;
+                }
+            }
+            i = j;
+        }
     }
 
     public void translate(Position position) {
@@ -76,11 +294,32 @@ public final class Structure implements Cloneable {
     }
 
     public void translate(int x, int y, int z) {
-        grid = mapGrid(entry -> entry.getKey().translate(x, y, z), Map.Entry::getValue);
+        xOffset += x;
+        yOffset += y;
+        zOffset += z;
+        if (null != xOccupancy) {
+            xOccupancy.translate(x);
+            yOccupancy.translate(y);
+            zOccupancy.translate(z);
+        }
     }
 
     public void rotate(int times) {
-        grid = mapGrid(entry -> entry.getKey().rotate(times), entry -> entry.getValue().rotate(times));
+        final var normalized = (times % 4 + 4) % 4;
+        if (0 == normalized) {
+            return;
+        }
+        final var newXOffset = rotateX(xOffset, zOffset, normalized);
+        final var newZOffset = rotateZ(xOffset, zOffset, normalized);
+        xOffset = newXOffset;
+        zOffset = newZOffset;
+        rotation = (rotation + normalized) & 3;
+        if (null != xOccupancy) {
+            rotateOccupancy(normalized);
+        }
+        for (final var listener : listeners) {
+            listener.onRotated(normalized);
+        }
     }
 
     public void regulate() {
@@ -89,38 +328,76 @@ public final class Structure implements Cloneable {
     }
 
     public Structure cut(@NonNull Range3 range3) {
-        final var newGrid = copyGrid(range3);
-        grid.keySet().removeAll(newGrid.keySet());
-        return new Structure(newGrid);
+        final var structure = copy(range3);
+        structure.storage.forEach((x, y, z, block) -> remove(x, y, z));
+        return structure;
     }
 
     public Structure copy(@NonNull Range3 range3) {
-        final var newGrid = copyGrid(range3);
-        return new Structure(newGrid);
+        final var newStorage = storage.empty();
+        forEach(range3, newStorage::put);
+        return new Structure(newStorage);
     }
 
     public void fill(@NonNull Range3 range3, @NonNull Block block) {
+        if (range3.isEmpty()) {
+            return;
+        }
+        if (listeners.isEmpty() && !storage.mayRejectWrites() &&
+            BULK_THRESHOLD <= (long) range3.getX().length() * range3.getY().length() * range3.getZ().length()) {
+            // blocks the fill overwrites are taken out first, so the whole box can be counted afterwards
+            if (null != xOccupancy && !getRange3().intersect(range3).isEmpty()) {
+                forEach(range3, (x, y, z, oldBlock) -> {
+                    xOccupancy.remove(x);
+                    yOccupancy.remove(y);
+                    zOccupancy.remove(z);
+                });
+            }
+            final var inverse = (4 - rotation) & 3;
+            storage.fill(range3.translate(-xOffset, -yOffset, -zOffset).rotate(inverse), block.rotate(inverse));
+            if (null != xOccupancy) {
+                final var xLength = range3.getX().length();
+                final var yLength = range3.getY().length();
+                final var zLength = range3.getZ().length();
+                xOccupancy.add(range3.getX().getStart(), range3.getX().getStop(), yLength * zLength);
+                yOccupancy.add(range3.getY().getStart(), range3.getY().getStop(), xLength * zLength);
+                zOccupancy.add(range3.getZ().getStart(), range3.getZ().getStop(), xLength * yLength);
+            }
+            checkFootprintBudget();
+            return;
+        }
         for (var x = range3.getX().getStart(); x < range3.getX().getStop(); ++x) {
             for (var y = range3.getY().getStart(); y < range3.getY().getStop(); ++y) {
                 for (var z = range3.getZ().getStart(); z < range3.getZ().getStop(); ++z) {
-                    final var position = Position.of(x, y, z);
-                    grid.put(position, block);
+                    putBlock(x, y, z, block);
                 }
             }
         }
     }
 
     public void paste(@NonNull Structure src) {
-        grid.putAll(src.grid);
+        putAll(src, 0, 0, 0, 0, false);
+    }
+
+    public void paste(@NonNull Structure src, int times, int x, int y, int z) {
+        putAll(src, times, x, y, z, false);
     }
 
     public void insert(@NonNull Structure src) {
-        final var newGrid = src.filterGrid(entry -> !grid.containsKey(entry.getKey()));
-        grid.putAll(newGrid);
+        putAll(src, 0, 0, 0, 0, true);
     }
 
     public void replace(@NonNull Range3 range3, @NonNull Block block) {
-        grid = mapGrid(Map.Entry::getKey, entry -> range3.contains(entry.getKey()) ? block : entry.getValue());
+        if (listeners.isEmpty()) {
+            final var inverse = (4 - rotation) & 3;
+            storage.replace(range3.translate(-xOffset, -yOffset, -zOffset).rotate(inverse), block.rotate(inverse));
+            return;
+        }
+        final List<Position> positionList = new ArrayList<>();
+        forEach(range3, (x, y, z, oldBlock) -> positionList.add(Position.of(x, y, z)));
+        for (final var position : positionList) {
+            putBlock(position.getX(), position.getY(), position.getZ(), block);
+        }
     }
 
     public void mirror() {
@@ -132,36 +409,212 @@ public final class Structure implements Cloneable {
     }
 
     public boolean isOverlapping(@NonNull Structure other) {
-        return grid.keySet().stream().anyMatch(other.grid.keySet()::contains);
+        if (0 == size() || 0 == other.size()) {
+            return false;
+        }
+        final var range3 = getRange3().intersect(other.getRange3());
+        if (range3.isEmpty()) {
+            return false;
+        }
+        final var smaller = size() <= other.size() ? this : other;
+        final var larger = smaller == this ? other : this;
+        return smaller.anyMatch(range3, (x, y, z, block) -> larger.has(x, y, z));
+    }
+
+    private boolean anyMatch(Range3 range3, BlockPredicate predicate) {
+        final var localRange3 = range3.translate(-xOffset, -yOffset, -zOffset).rotate(4 - rotation);
+        if (0 == rotation && 0 == xOffset && 0 == yOffset && 0 == zOffset) {
+            return storage.anyMatch(localRange3, predicate);
+        }
+        final var rotation = this.rotation;
+        final var xOffset = this.xOffset;
+        final var yOffset = this.yOffset;
+        final var zOffset = this.zOffset;
+        return storage.anyMatch(localRange3, (x, y, z, block) -> predicate.test(rotateX(x, z, rotation) + xOffset,
+                                                                                 y + yOffset,
+                                                                                 rotateZ(x, z, rotation) + zOffset,
+                                                                                 block.rotate(rotation)));
+    }
+
+    public MaterialBill getMaterialBill() {
+        final var materialBill = storage.countBlocks();
+        materialBill.onRotated(rotation);
+        return materialBill;
     }
 
     public Map<String, Integer> stat() {
         final var counts = new HashMap<String, Integer>();
-        for (var block : grid.values()) {
-            final var count = counts.getOrDefault(block.getId().getId(), 0) + 1;
-            counts.put(block.getId().getId(), count);
-        }
+        getMaterialBill().byId().forEach((id, count) -> counts.put(id.getId(), Math.toIntExact(count)));
         return counts;
     }
 
-    private Map<Position, Block> copyGrid(Range3 range3) {
-        return filterGrid(entry -> range3.contains(entry.getKey()));
+    private void putAll(Structure src, int times, int x, int y, int z, boolean onlyAbsent) {
+        final var normalized = (times % 4 + 4) % 4;
+        if (!listeners.isEmpty() || src.size() < BULK_THRESHOLD) {
+            src.forEach((px, py, pz, block) -> {
+                final var wx = rotateX(px, pz, normalized) + x;
+                final var wy = py + y;
+                final var wz = rotateZ(px, pz, normalized) + z;
+                if (!onlyAbsent || !has(wx, wy, wz)) {
+                    putBlock(wx, wy, wz, block.rotate(normalized));
+                }
+            });
+            return;
+        }
+        final var inverse = (4 - rotation) & 3;
+        final var blockRotation = (normalized + inverse) & 3;
+        final var batch = new BlockBatch(src.size());
+        src.forEach((px, py, pz, block) -> {
+            final var dx = rotateX(px, pz, normalized) + x - xOffset;
+            final var dz = rotateZ(px, pz, normalized) + z - zOffset;
+            batch.add(rotateX(dx, dz, inverse), py + y - yOffset, rotateZ(dx, dz, inverse), block.rotate(blockRotation));
+        });
+        storage.putAll(batch, onlyAbsent);
+        checkFootprintBudget();
+        if (null != xOccupancy) {
+            for (var i = 0; i < batch.size; ++i) {
+                if (batch.absent[i]) {
+                    occupy(rotateX(batch.xs[i], batch.zs[i], rotation) + xOffset,
+                           batch.ys[i] + yOffset,
+                           rotateZ(batch.xs[i], batch.zs[i], rotation) + zOffset);
+                }
+            }
+        }
+    }
+
+    private void putBlock(int x, int y, int z, Block block) {
+        final var inverse = (4 - rotation) & 3;
+        final var dx = x - xOffset;
+        final var dz = z - zOffset;
+        final var oldBlock = storage.put(rotateX(dx, dz, inverse), y - yOffset, rotateZ(dx, dz, inverse), block.rotate(inverse));
+        if (BlockStorage.REJECTED == oldBlock) {
+            return;
+        }
+        if (null == oldBlock) {
+            if (null != xOccupancy) {
+                occupy(x, y, z);
+            }
+            checkFootprintBudget();
+        }
+        for (final var listener : listeners) {
+            listener.onBlockChanged(x, y, z, null == oldBlock ? null : oldBlock.rotate(rotation), block);
+        }
+    }
+
+    private void checkFootprintBudget() {
+        if (footprintBudget <= 0 || storage.size() < nextBudgetCheck) {
+            return;
+        }
+        final var size = storage.size();
+        final var bytes = storage.estimateBytes();
+        if (footprintBudget < bytes) {
+            log.warn("structure footprint crossed the budget : {} > {} bytes at {} blocks", bytes, footprintBudget, size);
+            nextBudgetCheck = Integer.MAX_VALUE;
+        } else {
+            nextBudgetCheck = size + Math.max(Section.VOLUME, size >> 3);
+        }
+    }
+
+    private void occupy(int x, int y, int z) {
+        xOccupancy.add(x);
+        yOccupancy.add(y);
+        zOccupancy.add(z);
+    }
+
+    // world x and z of every block go through the same quarter turns as Position.rotate
+    private void rotateOccupancy(int times) {
+        if (1 == times || 3 == times) {
+            final var swap = xOccupancy;
+            xOccupancy = zOccupancy;
+            zOccupancy = swap;
+        }
+        if (1 == times || 2 == times) {
+            zOccupancy.negate();
+        }
+        if (2 == times || 3 == times) {
+            xOccupancy.negate();
+        }
+    }
+
+    private void buildOccupancy() {
+        if (null != xOccupancy) {
+            return;
+        }
+        xOccupancy = new AxisOccupancy();
+        yOccupancy = new AxisOccupancy();
+        zOccupancy = new AxisOccupancy();
+        forEach((x, y, z, block) -> occupy(x, y, z));
     }
 
-    private Map<Position, Block> filterGrid(Predicate<Map.Entry<Position, Block>> predicate) {
-        return grid.entrySet().stream().filter(predicate).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    // occupied sections in world section coordinates, laid out so that sorting them orders sections by y, then z, then x
+    private static long[] orderedSectionKeys(long[] sectionKeys, int rotation) {
+        final var keys = new long[sectionKeys.length];
+        for (var i = 0; i < keys.length; ++i) {
+            final var sx = SectionBlockStorage.sectionX(sectionKeys[i]);
+            final var sz = SectionBlockStorage.sectionZ(sectionKeys[i]);
+            keys[i] = orderedKey(rotateX(sx, sz, rotation), SectionBlockStorage.sectionY(sectionKeys[i]), rotateZ(sx, sz, rotation));
+        }
+        Arrays.sort(keys);
+        return keys;
     }
 
-    private Map<Position, Block> mapGrid(Function<Map.Entry<Position, Block>, Position> positionMapper,
-                                         Function<Map.Entry<Position, Block>, Block> blockMapper) {
-        final Map<Position, Block> newGrid = new HashMap<>();
-        for (final var entry : grid.entrySet()) {
-            final var block = blockMapper.apply(entry);
-            if (null != block) {
-                final var position = positionMapper.apply(entry);
-                newGrid.put(position, block);
+    // local index within a section layer of the cell at world offset (x, z) from the corner of the rotated section
+    private static int[] orderedLayer(int rotation) {
+        final var layer = new int[Section.LENGTH * Section.LENGTH];
+        for (var z = 0; z < Section.LENGTH; ++z) {
+            for (var x = 0; x < Section.LENGTH; ++x) {
+                final var localX = switch (rotation) {
+                    case 1 -> Section.MASK - z;
+                    case 2 -> Section.MASK - x;
+                    case 3 -> z;
+                    default -> x;
+                };
+                final var localZ = switch (rotation) {
+                    case 1 -> x;
+                    case 2 -> Section.MASK - z;
+                    case 3 -> Section.MASK - x;
+                    default -> z;
+                };
+                layer[(z << Section.BITS) | x] = (localZ << Section.BITS) | localX;
             }
         }
-        return newGrid;
+        return layer;
+    }
+
+    private static long orderedKey(int sx, int sy, int sz) {
+        return ((long) (sy + ORDERED_KEY_OFFSET) << (ORDERED_KEY_BITS * 2)) |
+               ((long) (sz + ORDERED_KEY_OFFSET) << ORDERED_KEY_BITS) |
+               (sx + ORDERED_KEY_OFFSET);
+    }
+
+    private static int orderedX(long key) {
+        return (int) (key & ORDERED_KEY_MASK) - ORDERED_KEY_OFFSET;
+    }
+
+    private static int orderedY(long key) {
+        return (int) (key >>> (ORDERED_KEY_BITS * 2)) - ORDERED_KEY_OFFSET;
+    }
+
+    private static int orderedZ(long key) {
+        return (int) ((key >>> ORDERED_KEY_BITS) & ORDERED_KEY_MASK) - ORDERED_KEY_OFFSET;
+    }
+
+    // same mapping as Position.rotate, times must be in [0, 4)
+    private static int rotateX(int x, int z, int times) {
+        return switch (times) {
+            case 1 -> z;
+            case 2 -> -x;
+            case 3 -> -z;
+            default -> x;
+        };
+    }
+
+    private static int rotateZ(int x, int z, int times) {
+        return switch (times) {
+            case 1 -> -x;
+            case 2 -> -z;
+            case 3 -> x;
+            default -> z;
+        };
     }
 }
@@ -0,0 +1,185 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// cell changes grouped by world section, each section keeps a small palette and 16-bit cell and palette indices
+public final class StructureDelta {
+    private static final class Cells {
+        private short[] indices = new short[16];
+        private Block[] blocks = new Block[16];
+        private int size;
+
+        private void add(int index, Block block) {
+            if (indices.length == size) {
+                indices = Arrays.copyOf(indices, size * 2);
+                blocks = Arrays.copyOf(blocks, size * 2);
+            }
+            indices[size] = (short) index;
+            blocks[size++] = block;
+        }
+    }
+
+    private static final class Bucket {
+        private final Cells before = new Cells();
+        private final Cells after = new Cells();
+    }
+
+    // palette[0] stands for an empty cell, before and after index into palette
+    private static final class SectionDelta {
+        private final Block[] palette;
+        private final short[] cells;
+        private final short[] before;
+        private final short[] after;
+
+        private SectionDelta(Block[] palette, short[] cells, short[] before, short[] after) {
+            this.palette = palette;
+            this.cells = cells;
+            this.before = before;
+            this.after = after;
+        }
+
+        private SectionDelta reverse() {
+            return new SectionDelta(palette, cells, after, before);
+        }
+    }
+
+    public static StructureDelta diff(@NonNull Structure from, @NonNull Structure to) {
+        final var bucketMap = new LongObjectMap<Bucket>();
+        from.forEach((x, y, z, block) -> bucket(bucketMap, x, y, z).before.add(Section.index(x, y, z), block));
+        to.forEach((x, y, z, block) -> bucket(bucketMap, x, y, z).after.add(Section.index(x, y, z), block));
+        final var keyList = new long[bucketMap.size()];
+        final var count = new int[1];
+        bucketMap.forEach((key, bucket) -> keyList[count[0]++] = key);
+        Arrays.sort(keyList);
+        final var sections = new SectionDelta[keyList.length];
+        final var indexStream = IntStream.range(0, keyList.length);
+        (keyList.length < SectionBlockStorage.DEFAULT_PARALLEL_THRESHOLD ? indexStream : indexStream.parallel())
+                .forEach(i -> sections[i] = diff(bucketMap.get(keyList[i])));
+        // sections where both sides hold the same states drop out
+        var changed = 0;
+        for (var i = 0; i < keyList.length; ++i) {
+            if (null != sections[i]) {
+                keyList[changed] = keyList[i];
+                sections[changed++] = sections[i];
+            }
+        }
+        return new StructureDelta(Arrays.copyOf(keyList, changed), Arrays.copyOf(sections, changed));
+    }
+
+    private final long[] keys;
+    private final SectionDelta[] sections;
+    private final int size;
+
+    private StructureDelta(long[] keys, SectionDelta[] sections) {
+        this.keys = keys;
+        this.sections = sections;
+        size = Arrays.stream(sections).mapToInt(section -> section.cells.length).sum();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    public int sectionCount() {
+        return sections.length;
+    }
+
+    public StructureDelta reverse() {
+        return new StructureDelta(keys, Arrays.stream(sections).map(SectionDelta::reverse).toArray(SectionDelta[]::new));
+    }
+
+    public void apply(@NonNull Structure structure) {
+        forEach((x, y, z, block) -> {
+            if (null == block) {
+                structure.remove(x, y, z);
+            } else {
+                structure.put(x, y, z, block);
+            }
+        });
+    }
+
+    // the blocks this delta sets, cleared cells cannot be represented
+    public Structure toStructure() {
+        final var structure = new Structure();
+        forEach((x, y, z, block) -> {
+            if (null != block) {
+                structure.put(x, y, z, block);
+            }
+        });
+        return structure;
+    }
+
+    // block is null for cells the delta clears
+    private void forEach(BlockConsumer consumer) {
+        for (var i = 0; i < keys.length; ++i) {
+            final var xOffset = SectionBlockStorage.sectionX(keys[i]) << Section.BITS;
+            final var yOffset = SectionBlockStorage.sectionY(keys[i]) << Section.BITS;
+            final var zOffset = SectionBlockStorage.sectionZ(keys[i]) << Section.BITS;
+            final var section = sections[i];
+            for (var j = 0; j < section.cells.length; ++j) {
+                final var index = section.cells[j];
+                consumer.accept(xOffset + Section.x(index), yOffset + Section.y(index), zOffset + Section.z(index),
+                                section.palette[section.after[j]]);
+            }
+        }
+    }
+
+    private static Bucket bucket(LongObjectMap<Bucket> bucketMap, int x, int y, int z) {
+        return bucketMap.computeIfAbsent(SectionBlockStorage.sectionKey(x >> Section.BITS, y >> Section.BITS, z >> Section.BITS),
+                                         key -> new Bucket());
+    }
+
+    private static SectionDelta diff(Bucket bucket) {
+        final var before = new Block[Section.VOLUME];
+        final var after = new Block[Section.VOLUME];
+        for (var i = 0; i < bucket.before.size; ++i) {
+            before[bucket.before.indices[i]] = bucket.before.blocks[i];
+        }
+        for (var i = 0; i < bucket.after.size; ++i) {
+            after[bucket.after.indices[i]] = bucket.after.blocks[i];
+        }
+        final List<Block> palette = new ArrayList<>();
+        palette.add(null);
+        final var cells = new short[Section.VOLUME];
+        final var beforeIndices = new short[Section.VOLUME];
+        final var afterIndices = new short[Section.VOLUME];
+        var size = 0;
+        for (var index = 0; index < Section.VOLUME; ++index) {
+            if (null == before[index] ? null == after[index] : before[index].isSameState(after[index])) {
+                continue;
+            }
+            cells[size] = (short) index;
+            beforeIndices[size] = paletteIndex(palette, before[index]);
+            afterIndices[size] = paletteIndex(palette, after[index]);
+            ++size;
+        }
+        if (0 == size) {
+            return null;
+        }
+        return new SectionDelta(palette.toArray(Block[]::new), Arrays.copyOf(cells, size),
+                                Arrays.copyOf(beforeIndices, size), Arrays.copyOf(afterIndices, size));
+    }
+
+    private static short paletteIndex(List<Block> palette, Block block) {
+        if (null == block) {
+            return 0;
+        }
+        for (var i = 1; i < palette.size(); ++i) {
+            if (block.isSameState(palette.get(i))) {
+                return (short) i;
+            }
+        }
+        palette.add(block);
+        return (short) (palette.size() - 1);
+    }
+}
@@ -0,0 +1,11 @@
+package com.ongakucraft.core.structure;
+
+import com.ongakucraft.core.block.Block;
+
+public interface StructureListener {
+    // oldBlock or newBlock is null when the cell was or becomes empty
+    void onBlockChanged(int x, int y, int z, Block oldBlock, Block newBlock);
+
+    default void onRotated(int times) {
+    }
+}
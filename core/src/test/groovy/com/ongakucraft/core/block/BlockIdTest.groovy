@@ -83,4 +83,11 @@ class BlockIdTest extends Specification {
         ""          | "note_block" | ":note_block"
         "minecraft" | "note_block" | "minecraft:note_block"
     }
+
+    def "should return the same instance for the same id"() {
+        expect:
+        BlockId.of("note_block").is(BlockId.of("minecraft", "note_block"))
+        BlockId.of("note_block").is(BlockId.parse("minecraft:note_block").get())
+        !BlockId.of("note_block").is(BlockId.of("", "note_block"))
+    }
 }
@@ -0,0 +1,68 @@
+package com.ongakucraft.core.block
+
+import com.ongakucraft.core.block.define.BlockDefine
+import com.ongakucraft.core.block.define.BlockPropertyDefine
+import spock.lang.Specification
+
+class BlockStateRegistryTest extends Specification {
+    static Block noteBlock() {
+        def properties = [BlockPropertyDefine.of("note", "note", (0..24).collect { String.valueOf(it) }),
+                          BlockPropertyDefine.of("powered", "powered", ["true", "false"])]
+        Block.of(BlockDefine.of(BlockId.of("note_block"), properties, false, 0, false, false, true))
+    }
+
+    def "should return shared instances for equal states"() {
+        setup:
+        def registry = new BlockStateRegistry()
+        def block = registry.register(noteBlock())
+
+        when:
+        def a = block.putProperty("note", 3).putProperty("powered", false)
+        def b = block.putProperty("powered", false).putProperty("note", 3)
+
+        then:
+        a.is(b)
+        a.registered
+        a.stateId != block.stateId
+        registry.getState(a.stateId).is(a)
+        a == noteBlock().putProperty("note", 3).putProperty("powered", false)
+        a.is(registry.register(noteBlock().putProperty("note", "3").putProperty("powered", "false")))
+    }
+
+    def "should intern facing transitions"() {
+        setup:
+        def registry = new BlockStateRegistry()
+        def block = registry.register(noteBlock())
+
+        expect:
+        block.withFacing(Direction.E).is(block.right())
+        block.back().back().is(block)
+        block.rotate(4).is(block)
+        registry.size() == 3
+    }
+
+    def "should keep unregistered blocks out of the registry"() {
+        setup:
+        def registry = new BlockStateRegistry()
+        def block = registry.register(noteBlock())
+
+        when:
+        def data = block.putData("Command", "say hi")
+
+        then:
+        !data.registered
+        Block.UNREGISTERED_STATE_ID == data.stateId
+        registry.size() == 1
+    }
+
+    def "should reject invalid values on registered blocks"() {
+        setup:
+        def block = new BlockStateRegistry().register(noteBlock())
+
+        when:
+        block.putProperty("note", 25)
+
+        then:
+        thrown(com.ongakucraft.core.OcException)
+    }
+}
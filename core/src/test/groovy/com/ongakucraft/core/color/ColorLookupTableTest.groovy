@@ -0,0 +1,53 @@
+package com.ongakucraft.core.color
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ColorLookupTableTest extends Specification {
+    def palette = [RgbColor.of(0, 0, 0), RgbColor.of(255, 255, 255), RgbColor.of(200, 30, 40),
+                   RgbColor.of(20, 160, 60), RgbColor.of(40, 60, 210), RgbColor.of(128, 128, 128)].collect { LabColor.of(it) }
+
+    // the mapped table file is 32 MB, spock deletes the directory after every feature
+    @TempDir
+    Path directory
+
+    // the cache directory is global, later specs should not map their tables into a deleted directory
+    def cleanup() {
+        ColorLookupTable.setCacheDirectory(null)
+    }
+
+    def "should match the nearest palette color by CIEDE2000"() {
+        setup:
+        def table = ColorLookupTable.of(palette)
+        def random = new Random(7)
+
+        expect:
+        (0..<500).every {
+            def rgbColor = RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256))
+            def target = LabColor.of(rgbColor)
+            def nearest = (0..<palette.size()).min { target.distance(palette[it]) }
+            nearest == table.indexOf(rgbColor) && nearest == table.indexOf(rgbColor)
+        }
+        table.is(ColorLookupTable.of(new ArrayList<>(palette)))
+        -1 == ColorLookupTable.of([]).indexOf(RgbColor.of(1, 2, 3))
+    }
+
+    def "should keep matched colors in the cache directory"() {
+        setup:
+        ColorLookupTable.setCacheDirectory(directory)
+        def table = ColorLookupTable.of(palette)
+        def index = table.indexOf(RgbColor.of(190, 40, 50))
+        def file = directory.resolve(table.fingerprint + ".lut")
+
+        expect:
+        2 == index
+        Files.exists(file)
+        index + 1 == Short.reverseBytes(new RandomAccessFile(file.toFile(), "r").withCloseable {
+            it.seek(((190 << 16) | (40 << 8) | 50) * 2L)
+            it.readShort()
+        })
+    }
+}
@@ -0,0 +1,24 @@
+package com.ongakucraft.core.color
+
+import spock.lang.Specification
+
+class LabColorIndexTest extends Specification {
+    def "should find the same color as a linear scan"() {
+        setup:
+        def random = new Random(11)
+        def palette = (0..<300).collect { LabColor.of(RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256))) }
+        // duplicates must resolve to the first one like the scan does
+        palette.addAll(palette.subList(0, 20))
+        Collections.shuffle(palette, random)
+        def index = LabColorIndex.of(palette)
+
+        expect:
+        (0..<2000).every {
+            def target = LabColor.of(RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256)))
+            def distances = palette.collect { target.distance(it) }
+            distances.indexOf(distances.min()) == index.nearest(target)
+        }
+        palette.withIndex().every { color, i -> palette.findIndexOf { it.is(color) } == index.nearest(color) }
+        -1 == LabColorIndex.of([]).nearest(palette[0])
+    }
+}
@@ -0,0 +1,30 @@
+package com.ongakucraft.core.color
+
+import spock.lang.Specification
+
+class LabConverterTest extends Specification {
+    def "should convert like RGBtoLAB within the documented error"() {
+        setup:
+        def random = new Random(19)
+        def pixels = ((0..<2000).collect { random.nextInt() } + [0xFF000000, 0xFFFFFFFF, 0x00010203]) as int[]
+        def bulk = new float[pixels.length * 3]
+        LabConverter.toLab(pixels, bulk)
+        def exactBulk = new double[pixels.length * 3]
+        LabConverter.toLab(pixels, exactBulk)
+        def lab = new double[3]
+
+        expect:
+        (0..<pixels.length).every { i ->
+            def r = (pixels[i] >> 16) & 0xFF
+            def g = (pixels[i] >> 8) & 0xFF
+            def b = pixels[i] & 0xFF
+            def expected = ColorConverter.RGBtoLAB(r, g, b)
+            LabConverter.toLab(r, g, b, lab, 0)
+            (0..<3).every {
+                Math.abs(expected[it] - lab[it]) <= LabConverter.MAX_ERROR && Math.abs(expected[it] - bulk[i * 3 + it]) <= 1e-4 &&
+                Math.abs(expected[it] - exactBulk[i * 3 + it]) <= LabConverter.MAX_ERROR
+            }
+        }
+        100 == LabConverter.toLabColor(255, 255, 255).l
+    }
+}
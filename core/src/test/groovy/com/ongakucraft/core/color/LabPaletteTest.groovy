@@ -0,0 +1,25 @@
+package com.ongakucraft.core.color
+
+import spock.lang.Specification
+
+class LabPaletteTest extends Specification {
+    def "should score and match like calculateDeltaE"() {
+        setup:
+        def random = new Random(13)
+        def colors = (0..<203).collect { LabColor.of(RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256))) }
+        colors.add(colors[5])
+        def palette = LabPalette.of(colors)
+        def out = new float[colors.size()]
+
+        expect:
+        (0..<500).every {
+            def target = LabColor.of(RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256)))
+            def distances = colors.collect { target.distance(it) }
+            palette.distances(target, out)
+            (0..<colors.size()).every { Math.abs(distances[it] - out[it]) <= LabPalette.MAX_KERNEL_ERROR } &&
+                    distances.indexOf(distances.min()) == palette.nearest(target)
+        }
+        5 == palette.nearest(colors[5])
+        -1 == LabPalette.of([]).nearest(colors[0])
+    }
+}
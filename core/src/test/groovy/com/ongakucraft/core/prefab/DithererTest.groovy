@@ -0,0 +1,41 @@
+package com.ongakucraft.core.prefab
+
+import com.ongakucraft.core.color.LabColor
+import com.ongakucraft.core.color.RgbColor
+import spock.lang.Specification
+
+class DithererTest extends Specification {
+    def palette = [LabColor.of(RgbColor.of(0, 0, 0)), LabColor.of(RgbColor.of(255, 255, 255))]
+
+    def "should mix palette colors to the shade of the source"() {
+        setup:
+        def gray = RgbColor.of(119, 119, 119)
+        RgbColor[][] image = (0..<64).collect { ([gray] * 64) as RgbColor[] }
+
+        when:
+        def indexGrid = ditherer.dither(image, palette)
+        def whiteRatio = indexGrid.sum { row -> row.sum() } / (64 * 64)
+
+        then:
+        0.4 < whiteRatio && whiteRatio < 0.6
+
+        where:
+        ditherer << [Ditherer.FLOYD_STEINBERG, Ditherer.ATKINSON, Ditherer.bayer(100)]
+    }
+
+    def "should stream rows top to bottom and skip transparent pixels"() {
+        setup:
+        def rows = []
+        def requested = []
+
+        when:
+        Ditherer.FLOYD_STEINBERG.dither(3, 4, { y ->
+            requested << y
+            [0xFFFFFFFF, 0, 0xFF000000] as int[]
+        }, palette, { y, indices -> rows << indices.toList() })
+
+        then:
+        [0, 1, 2, 3] == requested
+        [[1, -1, 0]] * 4 == rows
+    }
+}
@@ -0,0 +1,84 @@
+package com.ongakucraft.core.prefab
+
+import com.ongakucraft.core.OcException
+import com.ongakucraft.core.block.BlockDataset
+import com.ongakucraft.core.block.BlockDatasetVersion
+import com.ongakucraft.core.block.BlockId
+import com.ongakucraft.core.block.define.BlockDefine
+import com.ongakucraft.core.block.color.BlockMapColor
+import com.ongakucraft.core.color.LabColor
+import com.ongakucraft.core.color.RgbColor
+import spock.lang.Specification
+
+class MapArtBuilderTest extends Specification {
+    def random = new Random(17)
+    def blockMapColorList = (0..<60).collect {
+        BlockMapColor.of(it, BlockId.of("wool_" + it), RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256)), it % 3 - 1)
+    }
+
+    def "should match every pixel like a sequential scan"() {
+        setup:
+        def colors = (0..<500).collect { RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256)) }
+        def length = MapArtBuilder.BLOCK_LENGTH_PER_MAP
+        RgbColor[][] image = (0..<length).collect { (0..<length).collect { colors[random.nextInt(colors.size())] } as RgbColor[] }
+
+        when:
+        def colorMap = MapArtBuilder.buildColorMap(image, blockMapColorList)
+
+        then:
+        (0..<length).every { y ->
+            (0..<length).every { x ->
+                def target = LabColor.of(image[y][x])
+                colorMap[y][x].is(blockMapColorList.min { target.distance(it.labColor) })
+            }
+        }
+    }
+
+    def "should throw exception when image is not one map"() {
+        when:
+        MapArtBuilder.buildColorMap([[RgbColor.of(0, 0, 0)] as RgbColor[]] as RgbColor[][], blockMapColorList)
+
+        then:
+        thrown(OcException)
+    }
+
+    def "should keep every column inside the height bound"() {
+        setup:
+        def length = MapArtBuilder.BLOCK_LENGTH_PER_MAP
+        // a ramp keeps asking for the brightest shade, which climbs one level per pixel
+        def shadedList = (0..<20).collectMany { base ->
+            def rgbColor = RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256))
+            [[180, -1], [220, 0], [255, 1]].collect { multiplier, gradient ->
+                BlockMapColor.of(base, BlockId.of("wool_" + base),
+                                 RgbColor.of((int) (rgbColor.r * multiplier / 255), (int) (rgbColor.g * multiplier / 255),
+                                             (int) (rgbColor.b * multiplier / 255)), gradient)
+            }
+        }
+        RgbColor[][] image = (0..<length).collect { z ->
+            (0..<length).collect { x -> shadedList[(z * 3 + x) % shadedList.size()].rgbColor } as RgbColor[]
+        }
+        def blockDataset = BlockDataset.of(BlockDatasetVersion.of("1.18.2", 2975), [],
+                                           (["grass_block", "barrier"] + (0..<20).collect { "wool_" + it })
+                                                   .collect { BlockDefine.of(BlockId.of(it), [], false, 0, false, false, true) },
+                                           [], [], [])
+
+        when:
+        def free = MapStaircase.solve(image, shadedList, MapArtBuilder.MAX_WORLD_HEIGHT - 1)
+        def bounded = MapStaircase.solve(image, shadedList, 5)
+        def structure = MapArtBuilder.buildMap(image, shadedList, blockDataset, 6)
+
+        then:
+        def colorMap = MapArtBuilder.buildColorMap(image, shadedList)
+        (0..<length).every { z -> (0..<length).every { x -> shadedList[free.indices[z][x]].is(colorMap[z][x]) } }
+        [free, bounded].every { staircase ->
+            (0..<length).every { z ->
+                (0..<length).every { x ->
+                    staircase.levels[z + 1][x] - staircase.levels[z][x] == shadedList[staircase.indices[z][x]].gradient
+                }
+            }
+        }
+        bounded.levels.every { row -> row.every { 0 <= it && it < 5 } }
+        structure.range3.y.max < 6
+        length * length + length == structure.size()
+    }
+}
@@ -0,0 +1,58 @@
+package com.ongakucraft.core.prefab
+
+import com.ongakucraft.core.OcException
+import com.ongakucraft.core.block.BlockDataset
+import com.ongakucraft.core.block.BlockDatasetVersion
+import com.ongakucraft.core.block.BlockId
+import com.ongakucraft.core.block.define.BlockDefine
+import com.ongakucraft.core.block.color.BlockMapColor
+import com.ongakucraft.core.color.RgbColor
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+
+class TiledMapArtBuilderTest extends Specification {
+    def random = new Random(17)
+    def blockMapColorList = (0..<10).collect {
+        BlockMapColor.of(it, BlockId.of("wool_" + it), RgbColor.of(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 0)
+    }
+    def blockDataset = BlockDataset.of(BlockDatasetVersion.of("1.18.2", 2975), [],
+                                       (["grass_block", "barrier"] + (0..<10).collect { "wool_" + it })
+                                               .collect { BlockDefine.of(BlockId.of(it), [], false, 0, false, false, true) },
+                                       [], [], [])
+
+    def "should build every map of an image that is not a multiple of a map"() {
+        setup:
+        def length = MapArtBuilder.BLOCK_LENGTH_PER_MAP
+        RgbColor[][] image = (0..<length + 2).collect {
+            (0..<length * 2 - 5).collect { blockMapColorList[random.nextInt(blockMapColorList.size())].rgbColor } as RgbColor[]
+        }
+        def structureMap = new ConcurrentHashMap()
+
+        when:
+        def reportList = TiledMapArtBuilder.build(image, blockMapColorList[0].rgbColor, blockMapColorList, blockDataset,
+                                                  MapArtBuilder.MAX_WORLD_HEIGHT, 3, { row, col, structure ->
+            structureMap.put([row, col], structure)
+        })
+
+        then:
+        [[0, 0], [0, 1], [1, 0], [1, 1]] == reportList.collect { [it.row, it.col] }
+        4 == structureMap.size()
+        structureMap.values().every { length * length + length == it.size() }
+    }
+
+    def "should throw exception when a map fails to export"() {
+        setup:
+        RgbColor[][] image = (0..<MapArtBuilder.BLOCK_LENGTH_PER_MAP).collect {
+            (0..<MapArtBuilder.BLOCK_LENGTH_PER_MAP).collect { blockMapColorList[0].rgbColor } as RgbColor[]
+        }
+
+        when:
+        TiledMapArtBuilder.build(image, blockMapColorList[0].rgbColor, blockMapColorList, blockDataset,
+                                 MapArtBuilder.MAX_WORLD_HEIGHT, 2, { row, col, structure -> throw new IOException("disk full") })
+
+        then:
+        def e = thrown(OcException)
+        e.cause instanceof IOException
+    }
+}
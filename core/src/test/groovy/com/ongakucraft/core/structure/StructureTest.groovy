@@ -0,0 +1,878 @@
+package com.ongakucraft.core.structure
+
+import com.ongakucraft.core.OcException
+import com.ongakucraft.core.block.Block
+import com.ongakucraft.core.block.BlockDataset
+import com.ongakucraft.core.block.BlockDatasetVersion
+import com.ongakucraft.core.block.BlockId
+import com.ongakucraft.core.block.BlockStateRegistry
+import com.ongakucraft.core.block.Direction
+import com.ongakucraft.core.block.define.BlockDefine
+import spock.lang.Specification
+
+class StructureTest extends Specification {
+    static Block block(String path) {
+        Block.of(BlockDefine.of(BlockId.of(path), [], false, 0, false, false, true))
+    }
+
+    static List<Integer> bounds(Structure structure) {
+        def range3 = structure.range3
+        [range3.x.start, range3.x.stop, range3.y.start, range3.y.stop, range3.z.start, range3.z.stop]
+    }
+
+    def "should keep the same semantics on every storage"() {
+        setup:
+        def structure = new Structure(storage)
+        def stone = block("stone")
+        def dirt = block("dirt")
+
+        when:
+        structure.put(Position.of(-17, 3, 40), stone)
+        structure.put(Position.of(15, -1, 0), dirt)
+        structure.put(Position.of(16, -1, 0), dirt)
+        structure.put(Position.of(15, -1, 0), stone)
+
+        then:
+        3 == structure.size()
+        stone == structure.get(Position.of(15, -1, 0))
+        structure.has(Position.of(-17, 3, 40))
+        !structure.has(Position.of(0, 0, 0))
+        "[-17:17]" == structure.getRange3().x.toString()
+        "[-1:4]" == structure.getRange3().y.toString()
+        "[0:41]" == structure.getRange3().z.toString()
+        [stone: 2, dirt: 1] == structure.stat().collectEntries { k, v -> [(BlockId.parse(k).get().path): v] }
+
+        when:
+        def removed = structure.remove(Position.of(-17, 3, 40))
+
+        then:
+        stone == removed
+        2 == structure.size()
+        null == structure.remove(Position.of(-17, 3, 40))
+        "[15:17]" == structure.getRange3().x.toString()
+
+        cleanup:
+        structure.close()
+
+        where:
+        storage << [new HashBlockStorage(), new SectionBlockStorage(), new MappedBlockStorage()]
+    }
+
+    def "should grow palette beyond the initial bits per entry"() {
+        setup:
+        def structure = new Structure(new SectionBlockStorage())
+        def blocks = (0..<40).collect { block("block_$it") }
+
+        when:
+        for (var i = 0; i < 4096; ++i) {
+            structure.put(Position.of(i & 15, i >> 8, (i >> 4) & 15), blocks[i % blocks.size()])
+        }
+
+        then:
+        4096 == structure.size()
+        (0..<4096).every { structure.get(Position.of(it & 15, it >> 8, (it >> 4) & 15)) == blocks[it % blocks.size()] }
+    }
+
+    def "should translate and rotate like the hash storage"() {
+        setup:
+        def expected = new Structure(new HashBlockStorage())
+        def actual = new Structure(new SectionBlockStorage())
+        def random = new Random(7)
+        for (var i = 0; i < 500; ++i) {
+            def position = Position.of(random.nextInt(80) - 40, random.nextInt(20), random.nextInt(80) - 40)
+            def b = block("block_${random.nextInt(5)}")
+            expected.put(position, b)
+            actual.put(position, b)
+        }
+
+        when:
+        [expected, actual].each {
+            it.translate(3, -2, 17)
+            it.rotate(1)
+            it.regulate()
+        }
+
+        then:
+        expected.size() == actual.size()
+        expected.positionList.every { expected.get(it) == actual.get(it) }
+    }
+
+    def "should round trip packed position keys"() {
+        when:
+        def key = Position.key(x, y, z)
+
+        then:
+        x == Position.keyX(key)
+        y == Position.keyY(key)
+        z == Position.keyZ(key)
+        Position.of(x, y, z) == Position.ofKey(key)
+
+        where:
+        x        | y      | z
+        0        | 0      | 0
+        -1       | -1     | -1
+        8388607  | 32767  | -8388608
+        -8388608 | -32768 | 8388607
+    }
+
+    def "should access blocks by packed key"() {
+        setup:
+        def structure = new Structure()
+        def stone = block("stone")
+
+        when:
+        structure.put(Position.key(-3, 70, 12), stone)
+
+        then:
+        stone == structure.get(-3, 70, 12)
+        structure.has(Position.of(-3, 70, 12).toKey())
+        stone == structure.remove(Position.key(-3, 70, 12))
+        0 == structure.size()
+    }
+
+    def "should behave like a hash map after random updates"() {
+        setup:
+        def map = new LongObjectMap<Long>()
+        def expected = new HashMap<Long, Long>()
+        def random = new Random(11)
+
+        when:
+        for (var i = 0; i < 20000; ++i) {
+            long key = random.nextInt(3000) - 1500
+            if (random.nextBoolean()) {
+                assert expected.put(key, i as Long) == map.put(key, i as Long)
+            } else {
+                assert expected.remove(key) == map.remove(key)
+            }
+        }
+
+        then:
+        expected.size() == map.size()
+        expected.every { k, v -> map.get(k) == v }
+    }
+
+    def "should keep overlay writes out of the base structure"() {
+        setup:
+        def stone = block("stone")
+        def dirt = block("dirt")
+        def base = new Structure()
+        base.put(0, 0, 0, stone)
+        base.put(1, 0, 0, stone)
+
+        when:
+        def overlay = base.overlay()
+        overlay.put(0, 0, 0, dirt)
+        overlay.remove(1, 0, 0)
+        overlay.put(2, 0, 0, dirt)
+
+        then:
+        dirt == overlay.get(0, 0, 0)
+        !overlay.has(1, 0, 0)
+        2 == overlay.size()
+        [Position.of(0, 0, 0), Position.of(2, 0, 0)] as Set == overlay.positionList as Set
+        stone == base.get(0, 0, 0)
+        stone == base.get(1, 0, 0)
+        !base.has(2, 0, 0)
+        2 == base.size()
+    }
+
+    def "should keep the overlay size through repeated writes"() {
+        setup:
+        def stone = block("stone")
+        def dirt = block("dirt")
+        def base = new Structure()
+        base.put(0, 0, 0, stone)
+        base.put(1, 0, 0, stone)
+        def overlay = base.overlay()
+
+        when:
+        overlay.put(0, 0, 0, dirt)
+        overlay.put(0, 0, 0, stone)
+        overlay.remove(1, 0, 0)
+        overlay.remove(1, 0, 0)
+        overlay.put(1, 0, 0, dirt)
+        overlay.put(2, 0, 0, dirt)
+        overlay.remove(2, 0, 0)
+        overlay.remove(3, 0, 0)
+
+        then:
+        2 == overlay.size()
+        overlay.positionList.size() == overlay.size()
+    }
+
+    def "should refuse overlay writes beyond the key range before journaling them"() {
+        setup:
+        def stone = block("stone")
+        def base = new Structure()
+        base.put(10_000_000, 0, 0, stone)
+        def overlay = base.overlay()
+
+        expect:
+        stone == overlay.get(10_000_000, 0, 0)
+        1 == overlay.size()
+
+        when:
+        overlay.put(-10_000_000, 0, 0, stone)
+
+        then:
+        def e = thrown(OcException)
+        e.message.contains("overlay writes need x and z in [-8388608, 8388607]")
+        1 == overlay.size()
+    }
+
+    def "should iterate overlays over base blocks beyond the key range"() {
+        setup:
+        def stone = block("stone")
+        def dirt = block("dirt")
+        def base = new Structure()
+        base.put(1 << 23, 0, 0, stone)
+        base.put(0, 0, 0, stone)
+        def overlay = base.overlay()
+        overlay.put(0, 0, 0, dirt)
+
+        expect:
+        [Position.of(1 << 23, 0, 0), Position.of(0, 0, 0)] as Set == overlay.positionList as Set
+        [stone, dirt] as Set == overlay.positionList.collect { overlay.get(it) } as Set
+        def found = []
+        overlay.forEach(Range3.of(Range.of(1 << 23, (1 << 23) + 1), Range.of(1), Range.of(1)), { x, y, z, block ->
+            found << Position.of(x, y, z)
+        })
+        [Position.of(1 << 23, 0, 0)] == found
+    }
+
+    def "should keep bounds in sync with puts, removes and translations"() {
+        setup:
+        def stone = block("stone")
+        def structure = new Structure()
+        structure.put(0, 0, 0, stone)
+        structure.put(5, 2, -3, stone)
+        structure.put(5, 1, 7, stone)
+
+        expect:
+        [0, 6, 0, 3, -3, 8] == bounds(structure)
+
+        when:
+        structure.remove(5, 1, 7)
+        structure.put(-40, 1, 0, stone)
+
+        then:
+        [-40, 6, 0, 3, -3, 1] == bounds(structure)
+
+        when:
+        structure.remove(-40, 1, 0)
+        structure.remove(5, 2, -3)
+        structure.translate(1, 2, 3)
+
+        then:
+        [1, 2, 2, 3, 3, 4] == bounds(structure)
+        bounds(structure.clone()) == bounds(structure)
+
+        when:
+        structure.remove(1, 2, 3)
+
+        then:
+        structure.range3.is(Range3.EMPTY)
+    }
+
+    def "should keep bounds through rotations and bulk fills"() {
+        setup:
+        def stone = block("stone")
+        def structure = new Structure()
+        def random = new Random(29)
+        for (var i = 0; i < 300; ++i) {
+            structure.put(random.nextInt(60) - 30, random.nextInt(20), random.nextInt(60) - 30, stone)
+        }
+        def scanned = { s ->
+            def positionList = s.positionList
+            [positionList*.x.min(), positionList*.x.max() + 1, positionList*.y.min(), positionList*.y.max() + 1,
+             positionList*.z.min(), positionList*.z.max() + 1]
+        }
+        structure.range3
+
+        expect:
+        (1..7).every { step ->
+            structure.rotate(step)
+            structure.translate(step * 3, 0, -step)
+            structure.fill(Range3.of(Range.of(step * 5, step * 5 + 20), Range.of(-step, 10), Range.of(-40, -20 + step)), block("dirt"))
+            structure.remove(structure.positionList[0])
+            null != structure.@xOccupancy && bounds(structure) == scanned(structure)
+        }
+    }
+
+    def "should keep bounds of far apart blocks"() {
+        setup:
+        def stone = block("stone")
+        def structure = new Structure()
+        structure.put(-4_000_000, 0, 0, stone)
+        structure.range3
+        structure.put(4_000_000, 0, 0, stone)
+        structure.put(12, 0, 0, stone)
+
+        expect:
+        [-4_000_000, 4_000_001, 0, 1, 0, 1] == bounds(structure)
+
+        when:
+        structure.remove(-4_000_000, 0, 0)
+        structure.remove(4_000_000, 0, 0)
+        structure.rotate(2)
+
+        then:
+        [-12, -11, 0, 1, 0, 1] == bounds(structure)
+    }
+
+    def "should apply lazy rotations and offsets on read and write"() {
+        setup:
+        def src = new Structure()
+        def random = new Random(5)
+        def expected = [:]
+        for (var i = 0; i < 200; ++i) {
+            def position = Position.of(random.nextInt(20) - 10, random.nextInt(5), random.nextInt(20) - 10)
+            def b = block("block_${random.nextInt(3)}").withFacing(Direction.values()[random.nextInt(4)])
+            src.put(position, b)
+            expected[position] = b
+        }
+        def dst = new Structure()
+
+        when:
+        src.rotate(3)
+        src.translate(4, 1, -2)
+        src.rotate(2)
+        dst.paste(src, 1, 100, 0, 50)
+
+        then:
+        expected.every { position, b ->
+            def moved = position.rotate(3).translate(4, 1, -2).rotate(2)
+            def pasted = moved.rotate(1).translate(100, 0, 50)
+            src.get(moved) == b.rotate(1) && dst.get(pasted) == b.rotate(2)
+        }
+        expected.size() == dst.size()
+
+        when:
+        def moved = Position.of(0, 0, 0).rotate(3).translate(4, 1, -2).rotate(2)
+        src.put(moved, block("stone").withFacing(Direction.E))
+
+        then:
+        block("stone").withFacing(Direction.E) == src.get(moved)
+        src.positionList.contains(moved)
+    }
+
+    def "should only visit blocks inside the range"() {
+        setup:
+        def structure = new Structure(storage)
+        def random = new Random(3)
+        for (var i = 0; i < 3000; ++i) {
+            structure.put(random.nextInt(100) - 50, random.nextInt(40) - 8, random.nextInt(100) - 50, block("block_${random.nextInt(4)}"))
+        }
+        structure.rotate(rotation)
+        structure.translate(5, 0, -9)
+        def range3 = Range3.of(Range.of(-13, 22), Range.of(-3, 11), Range.of(-40, -1))
+        def expected = structure.positionList.findAll { range3.contains(it) } as Set
+
+        when:
+        def copied = structure.copy(range3)
+
+        then:
+        expected == copied.positionList as Set
+        expected.every { copied.get(it) == structure.get(it) }
+
+        when:
+        def cut = structure.cut(range3)
+
+        then:
+        structure.positionList.every { !range3.contains(it) }
+        !structure.isOverlapping(copied)
+        !copied.isOverlapping(structure)
+
+        cleanup:
+        [structure, copied, cut]*.close()
+
+        where:
+        storage                   | rotation
+        new SectionBlockStorage() | 0
+        new SectionBlockStorage() | 1
+        new HashBlockStorage()    | 3
+        new MappedBlockStorage()  | 2
+    }
+
+    def "should visit mapped sections by range whether it spans few or many of them"() {
+        setup:
+        def storage = new MappedBlockStorage()
+        def structure = new Structure(storage)
+        def random = new Random(12)
+        for (var i = 0; i < 400; ++i) {
+            structure.put(random.nextInt(400) - 200, random.nextInt(64), random.nextInt(400) - 200, block("block_${random.nextInt(4)}"))
+        }
+        def visit = { Range3 range3 ->
+            def positions = []
+            structure.forEach(range3, { x, y, z, b -> positions << Position.of(x, y, z) })
+            positions
+        }
+
+        expect:
+        [Range3.of(Range.of(-20, 30), Range.of(0, 20), Range.of(-40, 10)),
+         Range3.of(Range.of(-1000, 1000), Range.of(-50, 100), Range.of(-150, 1000))].every { range3 ->
+            def visited = visit(range3)
+            visited.size() == visited.toSet().size() &&
+            structure.positionList.findAll { range3.contains(it) } as Set == visited as Set &&
+            storage.anyMatch(range3) { x, y, z, b -> true } == !visited.isEmpty()
+        }
+
+        cleanup:
+        structure.close()
+    }
+
+    def "should detect overlapping structures"() {
+        setup:
+        def stone = block("stone")
+        def a = new Structure()
+        def b = new Structure()
+        a.fill(Range3.of(Range.of(0, 16), Range.of(0, 4), Range.of(0, 16)), stone)
+        b.fill(Range3.of(Range.of(16, 32), Range.of(0, 4), Range.of(0, 16)), stone)
+
+        expect:
+        !a.isOverlapping(b)
+
+        when:
+        b.put(15, 3, 15, stone)
+
+        then:
+        a.isOverlapping(b)
+        b.isOverlapping(a)
+    }
+
+    def "should stop at the first matching block"() {
+        setup:
+        def structure = new Structure(storage)
+        structure.fill(Range3.of(Range.of(-20, 40), Range.of(0, 8), Range.of(-20, 40)), block("stone"))
+        def range3 = Range3.of(Range.of(-5, 30), Range.of(2, 6), Range.of(0, 33))
+        def tested = 0
+
+        when:
+        def matched = storage.anyMatch(range3) { x, y, z, b ->
+            assert range3.contains(x, y, z)
+            ++tested
+            true
+        }
+
+        then:
+        matched
+        1 == tested
+        !storage.anyMatch(range3) { x, y, z, b -> false }
+        !storage.anyMatch(Range3.of(Range.of(50, 60), Range.of(0, 8), Range.of(0, 8))) { x, y, z, b -> true }
+
+        cleanup:
+        structure.close()
+
+        where:
+        storage << [new HashBlockStorage(), new SectionBlockStorage(), new MappedBlockStorage(), new ConcurrentBlockStorage()]
+    }
+
+    def "should produce the same result with parallel bulk operations"() {
+        setup:
+        def structures = [new Structure(new HashBlockStorage()),
+                          new Structure(new SectionBlockStorage(Integer.MAX_VALUE)),
+                          new Structure(new SectionBlockStorage(1)),
+                          new Structure(new MappedBlockStorage())]
+        def prefab = new Structure()
+        def random = new Random(13)
+        for (var i = 0; i < 6000; ++i) {
+            prefab.put(random.nextInt(40), random.nextInt(12), random.nextInt(40), block("block_${random.nextInt(6)}").withFacing(Direction.values()[random.nextInt(4)]))
+        }
+
+        when:
+        structures.each {
+            it.rotate(1)
+            it.fill(Range3.of(Range.of(-20, 30), Range.of(0, 8), Range.of(-5, 40)), block("stone"))
+            it.range3
+            it.paste(prefab, 3, 10, 4, -7)
+            it.insert(prefab)
+            it.replace(Range3.of(Range.of(0, 17), Range.of(2, 6), Range.of(-30, 33)), block("glass"))
+        }
+
+        then:
+        structures.every { it.size() == structures[0].size() }
+        structures.every { it.stat() == structures[0].stat() }
+        structures.every { bounds(it) == bounds(structures[0]) }
+        structures[0].positionList.every { p -> structures.every { it.get(p) == structures[0].get(p) } }
+
+        cleanup:
+        structures*.close()
+    }
+
+    def "should keep a tracked material bill equal to a fresh count"() {
+        setup:
+        def registry = new BlockStateRegistry()
+        def states = ["stone", "dirt", "glass"].collect { registry.register(block(it)) }
+        def structure = new Structure()
+        def random = new Random(17)
+        for (var i = 0; i < 5000; ++i) {
+            structure.put(random.nextInt(64), random.nextInt(8), random.nextInt(64), states[random.nextInt(3)].withFacing(Direction.values()[random.nextInt(4)]))
+        }
+        def bill = structure.materialBill
+        structure.addListener(bill)
+
+        when:
+        for (var i = 0; i < 2000; ++i) {
+            if (random.nextBoolean()) {
+                structure.remove(random.nextInt(64), random.nextInt(8), random.nextInt(64))
+            } else {
+                structure.put(random.nextInt(64), random.nextInt(8), random.nextInt(64), states[random.nextInt(3)].putData("k", "v"))
+            }
+        }
+        structure.rotate(1)
+        structure.fill(Range3.of(Range.of(0, 40), Range.of(0, 4), Range.of(-30, 0)), states[1])
+        structure.replace(Range3.of(Range.of(0, 20), Range.of(0, 8), Range.of(-64, 0)), states[2])
+
+        then:
+        bill.byState() == structure.materialBill.byState()
+        bill.byId() == structure.materialBill.byId()
+        bill.total == structure.size()
+        structure.stat().values().sum() == structure.size()
+        bill.getCount(states[1].withFacing(Direction.E)) == structure.materialBill.getCount(states[1].withFacing(Direction.E))
+    }
+
+    def "should keep material bills of blocks from two datasets apart"() {
+        setup:
+        def stone = new BlockStateRegistry().register(block("stone"))
+        def otherRegistry = new BlockStateRegistry()
+        def dirt = otherRegistry.register(block("dirt"))
+        def otherStone = otherRegistry.register(block("stone"))
+        def structure = new Structure()
+        structure.put(0, 0, 0, stone)
+        structure.put(1, 0, 0, dirt)
+        structure.put(2, 0, 0, dirt)
+        structure.put(3, 0, 0, otherStone)
+
+        when:
+        def bill = structure.materialBill
+        def tracked = new MaterialBill()
+        [dirt, stone, otherStone, dirt].each { tracked.add(it, 1) }
+
+        then:
+        stone.stateId == dirt.stateId
+        [(BlockId.of("stone")): 2L, (BlockId.of("dirt")): 2L] == bill.byId()
+        2 == bill.getCount(dirt)
+        2 == bill.getCount(stone)
+        2 == bill.getCount(otherStone)
+        bill.byId() == tracked.byId()
+        2 == tracked.getCount(stone)
+        2 == tracked.getCount(dirt)
+    }
+
+    def "should share untouched sections between clones"() {
+        setup:
+        def stone = block("stone")
+        def dirt = block("dirt")
+        def structure = new Structure()
+        structure.fill(Range3.of(Range.of(64), Range.of(16), Range.of(64)), stone)
+
+        when:
+        def frame = structure.clone()
+        frame.put(3, 3, 3, dirt)
+        structure.remove(40, 0, 40)
+        def sectionsA = structure.storage.sections
+        def sectionsB = frame.storage.sections
+        def shared = 0
+        sectionsA.forEach { key, section -> if (sectionsB.get(key).is(section)) { ++shared } }
+
+        then:
+        stone == structure.get(3, 3, 3)
+        dirt == frame.get(3, 3, 3)
+        !structure.has(40, 0, 40)
+        stone == frame.get(40, 0, 40)
+        64 * 16 * 64 - 1 == structure.size()
+        64 * 16 * 64 == frame.size()
+        sectionsA.size() - 2 == shared
+    }
+
+    def "should patch one structure into another and back with a delta"() {
+        setup:
+        def registry = new BlockStateRegistry()
+        def states = ["stone", "dirt", "glass", "sand"].collect { registry.register(block(it)) }
+        def from = new Structure()
+        def to = new Structure()
+        def random = new Random(19)
+        for (var i = 0; i < 8000; ++i) {
+            from.put(random.nextInt(60) - 20, random.nextInt(20), random.nextInt(60), states[random.nextInt(4)].withFacing(Direction.values()[random.nextInt(4)]))
+            to.put(random.nextInt(60) - 20, random.nextInt(20), random.nextInt(60), states[random.nextInt(4)])
+        }
+        to.paste(from.copy(Range3.of(Range.of(0, 20), Range.of(0, 10), Range.of(0, 20))), 0, 0, 0, 0)
+        to.rotate(1)
+        def expected = to.positionList.collectEntries { [(it): to.get(it)] }
+        def original = from.positionList.collectEntries { [(it): from.get(it)] }
+
+        when:
+        def delta = StructureDelta.diff(from, to)
+        def patched = from.clone()
+        delta.apply(patched)
+
+        then:
+        expected == patched.positionList.collectEntries { [(it): patched.get(it)] }
+        StructureDelta.diff(patched, to).isEmpty()
+        delta.size() < from.size() + to.size()
+
+        when:
+        delta.reverse().apply(patched)
+
+        then:
+        original == patched.positionList.collectEntries { [(it): patched.get(it)] }
+    }
+
+    def "should visit blocks in y-z-x order"() {
+        setup:
+        def structure = new Structure(storage)
+        def random = new Random(23)
+        for (var i = 0; i < 4000; ++i) {
+            structure.put(random.nextInt(80) - 40, random.nextInt(40) - 20, random.nextInt(80) - 40, block("block_${random.nextInt(3)}").withFacing(Direction.E))
+        }
+        structure.rotate(times)
+        structure.translate(7, -3, 11)
+        def expected = structure.positionList.sort { a, b -> a.y <=> b.y ?: a.z <=> b.z ?: a.x <=> b.x }
+        def visited = []
+
+        when:
+        structure.forEachOrdered { x, y, z, b ->
+            assert b == structure.get(x, y, z)
+            visited << Position.of(x, y, z)
+        }
+
+        then:
+        expected == visited
+
+        cleanup:
+        structure.close()
+
+        where:
+        storage                      | times
+        new SectionBlockStorage()    | 0
+        new SectionBlockStorage()    | 1
+        new SectionBlockStorage()    | 2
+        new SectionBlockStorage()    | 3
+        new MappedBlockStorage()     | 3
+        new ConcurrentBlockStorage() | 1
+        new HashBlockStorage()       | 2
+    }
+
+    def "should place runs and stamps like single placements"() {
+        setup:
+        def blockDataset = BlockDataset.of(BlockDatasetVersion.of("1.18.2", 2975), [],
+                                           ["stone", "dirt"].collect { BlockDefine.of(BlockId.of(it), [], false, 0, false, false, true) },
+                                           [], [], [])
+        def pattern = new Structure()
+        pattern.put(0, 0, 0, block("glass").withFacing(Direction.E))
+        pattern.put(1, 2, 3, block("sand"))
+        def expected = new Structure()
+        def actual = new Structure()
+        def single = new Cursor(blockDataset, expected).face(facing)
+        def batch = new Cursor(blockDataset, actual).face(facing)
+
+        when:
+        5.times { single.place("stone").step() }
+        single.jump(1)
+        4.times { single.place("dirt").step() }
+        single.clone().translate(2, 1, -1).paste(pattern)
+        batch.placeRun("stone", 5).jump(1)
+        batch.placeRun(blockDataset.getBlock("dirt").withFacing(facing), 4)
+        batch.stamp(pattern, 2, 1, -1)
+
+        then:
+        single.position == batch.position
+        expected.positionList as Set == actual.positionList as Set
+        expected.positionList.every { expected.get(it) == actual.get(it) }
+
+        where:
+        facing << [Direction.S, Direction.E, Direction.N, Direction.W]
+    }
+
+    def "should merge overlapping concurrent writers by rank"() {
+        setup:
+        def blocks = (0..<4).collect { block("track_${it}") }
+        def write = { Structure structure, int rank ->
+            def random = new Random(rank)
+            for (var i = 0; i < 20000; ++i) {
+                def x = random.nextInt(48)
+                def z = random.nextInt(48)
+                if (0 == i % 7) {
+                    structure.remove(x, 0, z)
+                } else {
+                    structure.put(x, random.nextInt(4), z, blocks[rank])
+                }
+            }
+        }
+        // the lowest rank keeps its last writes, which is what writing the ranks in reverse order one by one gives
+        def expected = new Structure(new HashBlockStorage())
+        (3..0).each { write(expected, it) }
+
+        when:
+        def storage = new ConcurrentBlockStorage()
+        (0..<4).collect { rank -> Thread.start { write(new Structure(storage.writer(rank)), rank) } }*.join()
+        def scene = new Structure(storage)
+
+        then:
+        expected.size() == scene.size()
+        expected.positionList.every { expected.get(it) == scene.get(it) }
+    }
+
+    def "should drop concurrent shards once nothing keeps them"() {
+        setup:
+        def stone = block("stone")
+        def storage = new ConcurrentBlockStorage()
+        def scene = new Structure(storage)
+        def writer = new Structure(storage.writer(2))
+
+        when:
+        scene.fill(Range3.of(Range.of(32), Range.of(4), Range.of(32)), stone)
+        scene.positionList.each { scene.remove(it) }
+
+        then:
+        0 == storage.size()
+        0 == storage.shardCount()
+
+        when:
+        writer.put(40, 0, 0, stone)
+        writer.remove(40, 0, 0)
+        new Structure(storage.writer(5)).put(40, 0, 0, stone)
+
+        then:
+        !scene.has(40, 0, 0)
+        1 == storage.shardCount()
+
+        when:
+        storage.releaseRanks()
+
+        then:
+        0 == storage.shardCount()
+    }
+
+    def "should report nothing for writes refused by rank"() {
+        setup:
+        def stone = block("stone")
+        def storage = new ConcurrentBlockStorage()
+        new Structure(storage.writer(1)).remove(40, 0, 0)
+        def writer = new Structure(storage.writer(5))
+        def changes = []
+        def listener = { x, y, z, oldBlock, newBlock -> changes << [x, y, z] } as StructureListener
+        writer.addListener(listener)
+
+        expect:
+        writer.range3.is(Range3.EMPTY)
+
+        when:
+        writer.put(40, 0, 0, stone)
+        writer.put(0, 0, 0, stone)
+
+        then:
+        [[0, 0, 0]] == changes
+        [0, 1, 0, 1, 0, 1] == bounds(writer)
+        1 == storage.size()
+
+        when:
+        writer.removeListener(listener)
+        writer.remove(0, 0, 0)
+        writer.fill(Range3.of(Range.of(32, 48), Range.of(16), Range.of(16)), stone)
+
+        then:
+        !writer.has(40, 0, 0)
+        16 * 16 * 16 - 1 == storage.size()
+
+        when:
+        writer.positionList.each { writer.remove(it) }
+
+        then:
+        0 == storage.size()
+        writer.range3.is(Range3.EMPTY)
+    }
+
+    def "should let concurrent iteration write into the storage it walks"() {
+        setup:
+        def stone = block("stone")
+        def storage = new ConcurrentBlockStorage(1)
+        def structure = new Structure(storage)
+        (0..<4).each { structure.put(it * 16, 0, 0, stone) }
+        def finished = []
+
+        when:
+        storage.forEach { x, y, z, block ->
+            def thread = Thread.start { new Structure(storage.writer(0)).put(x, 20, z, block) }
+            thread.join(5000)
+            finished << !thread.alive
+        }
+        def matched = storage.anyMatch(Range3.of(Range.of(64), Range.of(1), Range.of(1)), { x, y, z, block ->
+            def thread = Thread.start { storage.remove(x, 20, z) }
+            thread.join(5000)
+            finished << !thread.alive
+            false
+        } as BlockPredicate)
+
+        then:
+        !matched
+        8 == finished.size()
+        finished.every()
+        4 == storage.size()
+    }
+
+    def "should estimate footprints by component"() {
+        setup:
+        def states = ["stone", "dirt"].collect { block(it) }
+        def chest = block("chest").putData("CustomName", "box")
+        def structures = [new HashBlockStorage(), new SectionBlockStorage(), new MappedBlockStorage()].collect {
+            def structure = new Structure(it)
+            structure.fill(Range3.of(Range.of(64), Range.of(8), Range.of(64)), states[0])
+            structure.put(3, 3, 3, states[1])
+            structure.put(5, 9, 5, chest)
+            structure
+        }
+
+        when:
+        def footprints = structures*.footprint
+
+        then:
+        footprints.every { 3 == it.distinctStates }
+        footprints.every { 0 < it.blockBytes && 0 < it.propertyBytes && 0 < it.entityDataBytes }
+        footprints[1].indexBytes * 10 < footprints[0].indexBytes
+        footprints[2].indexBytes < footprints[1].indexBytes
+        0 == footprints[1].offHeapBytes
+        0 < footprints[2].offHeapBytes
+
+        cleanup:
+        structures*.close()
+    }
+
+    def "should count entity data shared between states once"() {
+        setup:
+        def chest = block("chest").putData("CustomName", "box")
+        def single = new Structure()
+        single.put(0, 0, 0, chest)
+        def shared = new Structure()
+        shared.put(0, 0, 0, chest)
+        shared.put(1, 0, 0, chest.rotate(1))
+
+        when:
+        def singleFootprint = single.footprint
+        def sharedFootprint = shared.footprint
+
+        then:
+        2 == sharedFootprint.distinctStates
+        chest.entityData.is(chest.rotate(1).entityData)
+        singleFootprint.entityDataBytes == sharedFootprint.entityDataBytes
+    }
+
+    def "should close the storages of mapped copies"() {
+        setup:
+        def structure = new Structure(new MappedBlockStorage())
+        structure.fill(Range3.of(Range.of(40), Range.of(4), Range.of(40)), block("stone"))
+
+        when:
+        def structures = [structure, structure.clone(), structure.copy(Range3.of(Range.of(8), Range.of(2), Range.of(8)))]
+
+        then:
+        3 == structures*.storage.toSet().size()
+        structures.every { it.storage.open }
+
+        when:
+        structures*.close()
+
+        then:
+        structures.every { !it.storage.open }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ongakucraft.core.color;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// CIEDE2000.calculateDeltaE lane by lane in float, only loaded through LabPalette when the module is present
+final class LabPaletteVectorKernel implements LabPalette.Kernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final float PI = (float) Math.PI;
+    private static final float TWO_PI = (float) (2 * Math.PI);
+    private static final float POW_25_7 = 6103515625f;
+
+    @Override
+    public void distances(LabPalette palette, double l, double a, double b, float[] out) {
+        final var size = palette.size();
+        final var bound = SPECIES.loopBound(size);
+        final var l1 = (float) l;
+        final var a1 = (float) a;
+        final var b1 = (float) b;
+        final var c1 = (float) Math.sqrt(a * a + b * b);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            final var l2 = FloatVector.fromArray(SPECIES, palette.lFloats, i);
+            final var a2 = FloatVector.fromArray(SPECIES, palette.aFloats, i);
+            final var b2 = FloatVector.fromArray(SPECIES, palette.bFloats, i);
+            final var c2 = FloatVector.fromArray(SPECIES, palette.chromaFloats, i);
+
+            final var lMean = l2.add(l1).mul(0.5f);
+            final var cMean = c2.add(c1).mul(0.5f);
+            final var g = oneMinusSqrtRatio(cMean).mul(0.5f).add(1);
+            final var a1Prime = g.mul(a1);
+            final var a2Prime = a2.mul(g);
+            final var c1Prime = a1Prime.mul(a1Prime).add(b1 * b1).lanewise(VectorOperators.SQRT);
+            final var c2Prime = a2Prime.fma(a2Prime, b2.mul(b2)).lanewise(VectorOperators.SQRT);
+            final var cMeanPrime = c1Prime.add(c2Prime).mul(0.5f);
+
+            final var h1Prime = hueAngle(FloatVector.broadcast(SPECIES, b1), a1Prime);
+            final var h2Prime = hueAngle(b2, a2Prime);
+            final var dh = h2Prime.sub(h1Prime);
+            final var wraps = dh.abs().compare(VectorOperators.GT, PI);
+            final var hSum = h1Prime.add(h2Prime);
+            final var hMeanPrime = hSum.add(hSum.broadcast(TWO_PI), wraps).mul(0.5f);
+
+            final var t = hMeanPrime.sub(PI / 6).lanewise(VectorOperators.COS).mul(-0.17f).add(1)
+                                    .add(hMeanPrime.mul(2).lanewise(VectorOperators.COS).mul(0.24f))
+                                    .add(hMeanPrime.mul(3).add(PI / 30).lanewise(VectorOperators.COS).mul(0.32f))
+                                    .sub(hMeanPrime.mul(4).sub(21 * PI / 60).lanewise(VectorOperators.COS).mul(0.2f));
+
+            final var shift = dh.broadcast(-TWO_PI).blend(dh.broadcast(TWO_PI), h2Prime.compare(VectorOperators.LE, h1Prime));
+            final var dhPrime = dh.add(shift, wraps);
+
+            final var dlPrime = l2.sub(l1);
+            final var dcPrime = c2Prime.sub(c1Prime);
+            final var dhBig = c1Prime.mul(c2Prime).lanewise(VectorOperators.SQRT).mul(2)
+                                     .mul(dhPrime.mul(0.5f).lanewise(VectorOperators.SIN));
+            final var lOffset = lMean.sub(50);
+            final var lOffset2 = lOffset.mul(lOffset);
+            final var sl = lOffset2.mul(0.015f).div(lOffset2.add(20).lanewise(VectorOperators.SQRT)).add(1);
+            final var sc = cMeanPrime.mul(0.045f).add(1);
+            final var sh = cMeanPrime.mul(0.015f).mul(t).add(1);
+
+            final var thetaArg = hMeanPrime.mul(180 / PI).sub(275).div(25);
+            final var deltaTheta = thetaArg.mul(thetaArg).neg().lanewise(VectorOperators.EXP).mul(PI / 6);
+            final var rc = oneMinusSqrtRatio(cMeanPrime).neg().add(1).mul(2);
+            final var rt = deltaTheta.mul(2).lanewise(VectorOperators.SIN).mul(rc).neg();
+
+            final var lTerm = dlPrime.div(sl);
+            final var cTerm = dcPrime.div(sc);
+            final var hTerm = dhBig.div(sh);
+            lTerm.mul(lTerm).add(cTerm.mul(cTerm)).add(hTerm.mul(hTerm)).add(rt.mul(cTerm).mul(hTerm))
+                 .lanewise(VectorOperators.SQRT).intoArray(out, i);
+        }
+        for (; i < size; ++i) {
+            out[i] = (float) CIEDE2000.calculateDeltaE(l, a, b, palette.ls[i], palette.as[i], palette.bs[i]);
+        }
+    }
+
+    // 1 - sqrt(c^7 / (c^7 + 25^7))
+    private static FloatVector oneMinusSqrtRatio(FloatVector c) {
+        final var c2 = c.mul(c);
+        final var c7 = c2.mul(c2).mul(c2).mul(c);
+        return c7.div(c7.add(POW_25_7)).lanewise(VectorOperators.SQRT).neg().add(1);
+    }
+
+    // atan2 in [0, 2pi)
+    private static FloatVector hueAngle(FloatVector b, FloatVector aPrime) {
+        final var h = b.lanewise(VectorOperators.ATAN2, aPrime);
+        return h.add(TWO_PI, h.compare(VectorOperators.LT, 0f));
+    }
+}